@@ -0,0 +1,107 @@
+package de.dh.informme.benchmark;
+
+import de.dh.informme.application.WorkerThreads;
+import de.dh.informme.doctorsOffice.hl7.Hl7Service;
+import de.dh.informme.doctorsOffice.patient.Patient;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * health cards read by many terminals at once, handled on platform threads like the Tomcat thread pool or on
+ * virtual threads
+ * <p>
+ * Every benchmark thread is a terminal which waits for its response, so the throughput shows how many cards are
+ * processed per second and the sample times show the latency including the time waiting for a thread. The virtual
+ * threads need Java 21. Against the in-memory database the work is bound by the CPU; run it against a networked
+ * database to see the effect of blocked threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(256)
+@Fork(1)
+public class ExecutionModeBenchmark {
+
+    /**
+     * number of request threads of Tomcat by default (server.tomcat.threads.max)
+     */
+    private static final int PLATFORM_THREADS = 200;
+
+    private static final int PATIENTS = 1000;
+
+    /**
+     * value of informme.execution.virtual-threads
+     */
+    @Param({"false", "true"})
+    private String virtualThreads;
+
+    private ConfigurableApplicationContext context;
+
+    private Hl7Service hl7Service;
+
+    private ExecutorService executor;
+
+    private final List<String> knownCards = new ArrayList<>();
+
+    private final AtomicLong nextNewCard = new AtomicLong();
+
+    @Setup
+    public void setUp() throws Exception {
+        context = InformmeContext.start("informme.execution.virtual-threads=" + virtualThreads,
+                "spring.datasource.hikari.maximum-pool-size=40");
+        WorkerThreads workerThreads = context.getBean(WorkerThreads.class);
+        if (Boolean.parseBoolean(virtualThreads) && !workerThreads.isVirtual()) {
+            throw new IllegalStateException("Virtual threads need Java 21, the benchmark runs with Java " + Runtime.version());
+        }
+        executor = workerThreads.newExecutor("request-", PLATFORM_THREADS);
+        hl7Service = context.getBean(Hl7Service.class);
+        for (int i = 0; i < PATIENTS; i++) {
+            String lastName = Hl7Corpus.lastName(i);
+            String birthday = Hl7Corpus.birthday(i);
+            Patient patient = hl7Service.processMessage(Hl7Corpus.admission("seed" + i, "seed" + i, lastName, "Max", "Mockstreet 1", birthday), true);
+            knownCards.add(Hl7Corpus.admission("known" + i, patient.getHl7Id(), lastName, "Max", "Mockstreet 1", birthday));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        executor.shutdownNow();
+        context.close();
+    }
+
+    /**
+     * read a card; nine of ten cards belong to known patients, the others to new patients
+     */
+    @Benchmark
+    public Object readHealthCard() throws Exception {
+        String card;
+        if (ThreadLocalRandom.current().nextInt(10) == 0) {
+            long number = PATIENTS + nextNewCard.getAndIncrement();
+            card = Hl7Corpus.admission("new" + number, "new" + number, Hl7Corpus.lastName(number), "Max", "Mockstreet 1", Hl7Corpus.birthday(number));
+        } else {
+            card = knownCards.get(ThreadLocalRandom.current().nextInt(knownCards.size()));
+        }
+        return executor.submit(() -> hl7Service.processMessage(card, true)).get();
+    }
+}
@@ -0,0 +1,68 @@
+package de.dh.informme.benchmark;
+
+import de.dh.informme.hl7Mock.Hl7MessageCompression;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * cost of {@link Hl7MessageCompression} per message; the size of the stored messages compared to the plain messages
+ * is printed before the first iteration
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class Hl7CompressionBenchmark {
+
+    private static final int MESSAGES = 256;
+
+    private final String[] messages = new String[MESSAGES];
+
+    private final String[] compressedMessages = new String[MESSAGES];
+
+    private int next = 0;
+
+    @Setup
+    public void setUp() {
+        long plainBytes = 0;
+        long storedBytes = 0;
+        for (int i = 0; i < MESSAGES; i++) {
+            messages[i] = Hl7Corpus.admission("msg" + i, String.valueOf(100000 + i), Hl7Corpus.lastName(i), "Max", "Mockstreet " + i);
+            compressedMessages[i] = Hl7MessageCompression.compress(messages[i]);
+            plainBytes += messages[i].getBytes(StandardCharsets.UTF_8).length;
+            storedBytes += compressedMessages[i].getBytes(StandardCharsets.UTF_8).length;
+        }
+        System.out.printf("Stored size: %d of %d bytes (%.1f %%)%n", storedBytes, plainBytes, 100.0 * storedBytes / plainBytes);
+    }
+
+    /**
+     * compress a message before it is saved
+     */
+    @Benchmark
+    public String compress() {
+        next = (next + 1) % MESSAGES;
+        return Hl7MessageCompression.compress(messages[next]);
+    }
+
+    /**
+     * decompress a message after it was loaded
+     */
+    @Benchmark
+    public String decompress() {
+        next = (next + 1) % MESSAGES;
+        return Hl7MessageCompression.decompress(compressedMessages[next]);
+    }
+}
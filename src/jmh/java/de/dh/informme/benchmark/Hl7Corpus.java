@@ -0,0 +1,107 @@
+package de.dh.informme.benchmark;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * HL7 messages for the benchmarks, shaped like the messages of the card readers
+ */
+final class Hl7Corpus {
+
+    private static final String[] SYLLABLES = {
+            "ba", "be", "bi", "bo", "da", "de", "di", "do", "fa", "fe", "ga", "go", "ka", "ke", "ki", "ko",
+            "la", "le", "li", "lo", "ma", "me", "mo", "na", "ne", "ni", "ra", "re", "ri", "sa", "ta", "to"
+    };
+
+    private static final LocalDate FIRST_BIRTHDAY = LocalDate.of(1940, 1, 1);
+
+    private Hl7Corpus() {
+    }
+
+    /**
+     * get an ADT^A01 message of a patient
+     *
+     * @param controlId         message control id (MSH-10)
+     * @param patientIdentifier patient identifier (PID-3)
+     * @param lastName          last name of the patient
+     * @param firstName         first name of the patient
+     * @param street            street and house number of the patient
+     * @return HL7 message
+     */
+    static String admission(String controlId, String patientIdentifier, String lastName, String firstName, String street) {
+        return admission(controlId, patientIdentifier, lastName, firstName, street, "19900101");
+    }
+
+    /**
+     * get an ADT^A01 message of a patient
+     *
+     * @param controlId         message control id (MSH-10)
+     * @param patientIdentifier patient identifier (PID-3)
+     * @param lastName          last name of the patient
+     * @param firstName         first name of the patient
+     * @param street            street and house number of the patient
+     * @param birthday          birthday of the patient as yyyyMMdd
+     * @return HL7 message
+     */
+    static String admission(String controlId, String patientIdentifier, String lastName, String firstName, String street, String birthday) {
+        return admission(controlId, new String[]{patientIdentifier}, lastName, firstName, street, birthday, "1234567");
+    }
+
+    /**
+     * get an ADT^A01 message of a patient with one or more patient identifiers
+     *
+     * @param controlId          message control id (MSH-10)
+     * @param patientIdentifiers patient identifiers (PID-3), repeated in the given order
+     * @param lastName           last name of the patient
+     * @param firstName          first name of the patient
+     * @param street             street and house number of the patient
+     * @param birthday           birthday of the patient as yyyyMMdd
+     * @param localNumber        local part of the telephone number
+     * @return HL7 message
+     */
+    static String admission(String controlId, String[] patientIdentifiers, String lastName, String firstName, String street, String birthday, String localNumber) {
+        StringBuilder identifiers = new StringBuilder();
+        for (String patientIdentifier : patientIdentifiers) {
+            if (identifiers.length() > 0) {
+                identifiers.append('~');
+            }
+            identifiers.append(patientIdentifier).append("^^^Hospital^MR");
+        }
+        return "MSH|^~\\&|CardReader|Praxis|InformMe|Praxis|202401041230||ADT^A01|" + controlId + "|P|2.6\r" +
+                "EVN|A01|202401041230|||\r" +
+                "PID|1||" + identifiers + "||" + lastName + "^" + firstName + "^^^Herr||" + birthday + "|M|||" +
+                street + "^^Mockcity^^12345^Deutschland||^PRN^^" + firstName.toLowerCase() + "@mail.de^49^123^" + localNumber + "|||||\r" +
+                "PV1|1|I|2000^2050^01||||12345^Doe^Jane^A^^Dr.^MD|67890^Musterfrau^Mia^B^^Dr.^MD||||||||||1234567890||||||||||||||202401041230||";
+    }
+
+    /**
+     * get a last name which is unique for the given number
+     * <p>
+     * Names are made of letters only, like the names on the health cards. The number is scrambled first, so the names
+     * of consecutive numbers do not look alike and are not taken as duplicates of each other.
+     *
+     * @param number number of the patient, less than 2^32
+     * @return last name
+     */
+    static String lastName(long number) {
+        // multiplying with an odd number is a bijection on 32 bits
+        long scrambled = (number * 0x9E3779B1L) & 0xFFFFFFFFL;
+        StringBuilder name = new StringBuilder();
+        do {
+            name.append(SYLLABLES[(int) (scrambled % SYLLABLES.length)]);
+            scrambled /= SYLLABLES.length;
+        } while (scrambled > 0);
+        name.setCharAt(0, Character.toUpperCase(name.charAt(0)));
+        return name.toString();
+    }
+
+    /**
+     * get a birthday for the given number; the birthdays of 80 years are used in turn
+     *
+     * @param number number of the patient
+     * @return birthday as yyyyMMdd
+     */
+    static String birthday(long number) {
+        return FIRST_BIRTHDAY.plusDays(number % 29220).format(DateTimeFormatter.BASIC_ISO_DATE);
+    }
+}
@@ -0,0 +1,117 @@
+package de.dh.informme.benchmark;
+
+import de.dh.informme.doctorsOffice.hl7.Hl7Service;
+import de.dh.informme.doctorsOffice.patient.Patient;
+import de.dh.informme.doctorsOffice.patient.PatientService;
+import de.dh.informme.error.DismatchError;
+import de.dh.informme.error.DuplicatePatientError;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * end-to-end processing of health card messages with {@link Hl7Service#processMessage} on an in-memory database
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class Hl7IngestBenchmark {
+
+    /**
+     * number of patients in the database before the benchmark starts
+     */
+    private static final int PATIENTS = 1000;
+
+    /**
+     * kind of message:
+     * <ul>
+     *     <li>NEW: unknown patient, the patient is saved</li>
+     *     <li>KNOWN: known HL7 id with the same data</li>
+     *     <li>DISMATCH: known HL7 id with a different address, rejected without auto update</li>
+     *     <li>DUPLICATE: unknown HL7 id of a patient which exists twice, rejected</li>
+     * </ul>
+     */
+    @Param({"NEW", "KNOWN", "DISMATCH", "DUPLICATE"})
+    private String scenario;
+
+    /**
+     * value of informme.hl7.fast-pid-extraction
+     */
+    @Param({"false", "true"})
+    private String fastPidExtraction;
+
+    private ConfigurableApplicationContext context;
+
+    private Hl7Service hl7Service;
+
+    private final List<String> messages = new ArrayList<>();
+
+    private final AtomicLong nextMessage = new AtomicLong();
+
+    @Setup
+    public void setUp() throws Exception {
+        context = InformmeContext.start("informme.hl7.fast-pid-extraction=" + fastPidExtraction);
+        hl7Service = context.getBean(Hl7Service.class);
+        PatientService patientService = context.getBean(PatientService.class);
+
+        for (int i = 0; i < PATIENTS; i++) {
+            String lastName = Hl7Corpus.lastName(i);
+            String birthday = Hl7Corpus.birthday(i);
+            Patient patient = hl7Service.processMessage(Hl7Corpus.admission("seed" + i, "seed" + i, lastName, "Max", "Mockstreet 1", birthday), true);
+            switch (scenario) {
+                case "KNOWN" -> messages.add(Hl7Corpus.admission("known" + i, patient.getHl7Id(), lastName, "Max", "Mockstreet 1", birthday));
+                case "DISMATCH" -> messages.add(Hl7Corpus.admission("dismatch" + i, patient.getHl7Id(), lastName, "Max", "Otherstreet 2", birthday));
+                case "DUPLICATE" -> {
+                    // a second patient with the same name and birthday, e.g. from the time before the duplicate check
+                    Patient twin = new Patient(null, "twin" + i, patient.getFirstName(), patient.getLastName(), patient.getBirthday(),
+                            patient.getAddress(), patient.getTelephone(), patient.getEmail(), patient.getSex(), null, null, null, null);
+                    patientService.savePatient(twin);
+                    messages.add(Hl7Corpus.admission("duplicate" + i, "unknown" + i, lastName, "Max", "Mockstreet 1", birthday));
+                }
+                default -> {
+                    // NEW messages are created while measuring, every one with an unknown patient
+                }
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Object processMessage() throws Exception {
+        long number = nextMessage.getAndIncrement();
+        String message;
+        if ("NEW".equals(scenario)) {
+            message = Hl7Corpus.admission("new" + number, "new" + number, Hl7Corpus.lastName(PATIENTS + number), "Max", "Mockstreet 1",
+                    Hl7Corpus.birthday(PATIENTS + number));
+        } else {
+            message = messages.get((int) (number % messages.size()));
+        }
+        try {
+            return hl7Service.processMessage(message, false);
+        } catch (DismatchError | DuplicatePatientError e) {
+            return e;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package de.dh.informme.benchmark;
+
+import ca.uhn.hl7v2.HL7Exception;
+import de.dh.informme.hl7Mock.Hl7MockService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * parse, update, encode and save of HL7 mocks with {@link Hl7MockService#updateMessage}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class Hl7MockBenchmark {
+
+    private final String existingMessage = Hl7Corpus.admission("existing", "123456", "Mustermann", "Max", "Mockstreet 1");
+
+    private final AtomicLong nextMessage = new AtomicLong();
+
+    private ConfigurableApplicationContext context;
+
+    private Hl7MockService hl7MockService;
+
+    @Setup
+    public void setUp() throws HL7Exception {
+        context = InformmeContext.start();
+        hl7MockService = context.getBean(Hl7MockService.class);
+        hl7MockService.updateMessage(existingMessage, "654321");
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    /**
+     * update a message which is already saved
+     */
+    @Benchmark
+    public String updateExistingMessage() throws HL7Exception {
+        return hl7MockService.updateMessage(existingMessage, "654321");
+    }
+
+    /**
+     * save a new message
+     */
+    @Benchmark
+    public String saveNewMessage() throws HL7Exception {
+        long number = nextMessage.getAndIncrement();
+        return hl7MockService.updateMessage(Hl7Corpus.admission("new" + number, "123456", "Mustermann", "Max", "Mockstreet 1"), "654321");
+    }
+}
@@ -0,0 +1,113 @@
+package de.dh.informme.benchmark;
+
+import ca.uhn.hl7v2.DefaultHapiContext;
+import ca.uhn.hl7v2.HL7Exception;
+import ca.uhn.hl7v2.HapiContext;
+import ca.uhn.hl7v2.model.v26.message.ADT_A01;
+import ca.uhn.hl7v2.model.v26.segment.PID;
+import ca.uhn.hl7v2.parser.Parser;
+import ca.uhn.hl7v2.validation.builder.support.DefaultValidationBuilder;
+import ca.uhn.hl7v2.validation.builder.support.DefaultValidationWithoutTNBuilder;
+import ca.uhn.hl7v2.validation.builder.support.NoValidationBuilder;
+import de.dh.informme.doctorsOffice.hl7.Hl7FastPidExtractor;
+import de.dh.informme.doctorsOffice.hl7.Hl7Parser;
+import de.dh.informme.doctorsOffice.hl7.Hl7PatientData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.reflect.Field;
+import java.text.ParseException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * parsing of a health card message and extraction of the patient data, without database
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class Hl7ParsingBenchmark {
+
+    /**
+     * validation level of the shared parser, like informme.hl7.validation
+     */
+    @Param({"none", "default", "strict"})
+    private String validation;
+
+    private final String message = Hl7Corpus.admission("1", "123456", "Mustermann", "Max", "Mockstreet 1");
+
+    private Parser sharedParser;
+
+    private PID parsedPid;
+
+    private Hl7Parser hl7Parser;
+
+    private Hl7FastPidExtractor hl7FastPidExtractor;
+
+    @Setup
+    public void setUp() throws HL7Exception {
+        HapiContext context = new DefaultHapiContext();
+        switch (validation) {
+            case "none" -> {
+                context.setValidationRuleBuilder(new NoValidationBuilder());
+                context.getParserConfiguration().setValidating(false);
+            }
+            case "strict" -> context.setValidationRuleBuilder(new DefaultValidationBuilder());
+            default -> context.setValidationRuleBuilder(new DefaultValidationWithoutTNBuilder());
+        }
+        sharedParser = context.getPipeParser();
+        parsedPid = ((ADT_A01) sharedParser.parse(message)).getPID();
+
+        hl7Parser = new Hl7Parser();
+        hl7FastPidExtractor = new Hl7FastPidExtractor();
+        Field field = ReflectionUtils.findField(Hl7FastPidExtractor.class, "hl7Parser");
+        ReflectionUtils.makeAccessible(field);
+        ReflectionUtils.setField(field, hl7FastPidExtractor, hl7Parser);
+    }
+
+    /**
+     * parse with the shared parser and read the patient data, the default path of Hl7Service
+     */
+    @Benchmark
+    public Hl7PatientData parseWithSharedContext() throws HL7Exception, ParseException {
+        return hl7Parser.getPatientData(((ADT_A01) sharedParser.parse(message)).getPID());
+    }
+
+    /**
+     * parse with a new context for every message, like before the context was shared
+     */
+    @Benchmark
+    public Hl7PatientData parseWithNewContext() throws Exception {
+        try (HapiContext context = new DefaultHapiContext()) {
+            return hl7Parser.getPatientData(((ADT_A01) context.getPipeParser().parse(message)).getPID());
+        }
+    }
+
+    /**
+     * read the patient data of an already parsed PID segment
+     */
+    @Benchmark
+    public Hl7PatientData extractFromParsedPid() throws ParseException {
+        return hl7Parser.getPatientData(parsedPid);
+    }
+
+    /**
+     * read the patient data with the fast extractor; does not depend on the validation level
+     */
+    @Benchmark
+    public Hl7PatientData extractFast() throws ParseException {
+        return hl7FastPidExtractor.extract(message);
+    }
+}
@@ -0,0 +1,227 @@
+package de.dh.informme.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.dh.informme.hl7Mock.Hl7Mock;
+import de.dh.informme.hl7Mock.Hl7MockKeyReservoir;
+import de.dh.informme.hl7Mock.Hl7MockStore;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * replays a synthetic stream of health cards against POST /patient/read at a fixed rate
+ * <p>
+ * The application runs with a web server on the embedded in-memory database. The cards come from {@link Hl7Workload},
+ * the mix is set with the workload.* system properties. The driver sends at the target rate whether or not the earlier
+ * requests have been answered, and the latency of a card is measured from the time it should have been sent, so a
+ * stalled server shows up in the percentiles instead of slowing down the driver. At most replay.max-in-flight requests
+ * are open at once; the time a card waits for a free slot is part of its latency.
+ * <p>
+ * System properties:
+ * <ul>
+ *     <li>replay.rate: health cards per second, default 50</li>
+ *     <li>replay.messages: number of counted health cards, default 10000</li>
+ *     <li>replay.warmup: number of health cards sent before at the same rate and not counted, default 1000</li>
+ *     <li>replay.max-in-flight: maximum number of open requests, default 256</li>
+ *     <li>replay.timeout: time in milliseconds after which a request counts as failed, default 30000</li>
+ *     <li>replay.mocks: number of HL7 messages saved into the HL7 mock store before the replay, default 0; the store
+ *     is chosen with -Dinformme.hl7-mock.store=jpa|file</li>
+ * </ul>
+ * <pre>
+ * ./mvnw -P benchmark compile exec:java@replay -Dreplay.rate=100 -Dreplay.messages=100000
+ * </pre>
+ */
+public final class Hl7ReplayDriver {
+
+    /**
+     * number of HL7 messages saved together
+     */
+    private static final int MOCK_CHUNK_SIZE = 1000;
+
+    /**
+     * highest latency the histogram records exactly, in microseconds
+     */
+    private static final long MAX_LATENCY = TimeUnit.MINUTES.toMicros(10);
+
+    private final Hl7Workload workload;
+
+    private final HttpClient httpClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    /**
+     * latencies in microseconds from the intended send time to the response
+     */
+    private final Histogram latencies = new ConcurrentHistogram(MAX_LATENCY, 3);
+
+    /**
+     * number of responses by kind of card and status code, 0 for failed requests
+     */
+    private final Map<String, LongAdder> responses = new ConcurrentHashMap<>();
+
+    private Hl7ReplayDriver(Hl7Workload workload) {
+        this.workload = workload;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int rate = Integer.getInteger("replay.rate", 50);
+        long messages = Long.getLong("replay.messages", 10000);
+        long warmup = Long.getLong("replay.warmup", 1000);
+        int maxInFlight = Integer.getInteger("replay.max-in-flight", 256);
+        Duration timeout = Duration.ofMillis(Long.getLong("replay.timeout", 30000));
+        long mocks = Long.getLong("replay.mocks", 0);
+        Hl7Workload.Mix mix = Hl7Workload.Mix.fromSystemProperties();
+
+        try (ConfigurableApplicationContext context = InformmeContext.startWithWebServer()) {
+            if (mocks > 0) {
+                // a workload of its own, so the replayed cards do not depend on the number of mocks
+                Hl7Workload mockWorkload = new Hl7Workload(new Hl7Workload.Mix(mix.returning(), mix.mismatches(),
+                        mix.exactDuplicates(), mix.nearDuplicates(), mix.extraIds(), mix.seed() + 1), "MOCK");
+                fillHl7Mocks(context, mockWorkload, mocks);
+            }
+            int port = context.getEnvironment().getRequiredProperty("local.server.port", Integer.class);
+            URI uri = URI.create("http://localhost:" + port + "/patient/read?autoUpdate=true");
+            Hl7ReplayDriver driver = new Hl7ReplayDriver(new Hl7Workload(mix, "WL"));
+            long duration = driver.replay(uri, rate, warmup, messages, maxInFlight, timeout);
+            driver.report(System.out, messages, duration);
+        }
+    }
+
+    /**
+     * save HL7 messages into the HL7 mock store in chunks and draw a new sample of their MSH ids
+     *
+     * @param context  application context
+     * @param workload source of the messages
+     * @param mocks    number of messages
+     */
+    private static void fillHl7Mocks(ConfigurableApplicationContext context, Hl7Workload workload, long mocks) {
+        Hl7MockStore hl7MockStore = context.getBean(Hl7MockStore.class);
+        long start = System.nanoTime();
+        List<Hl7Mock> chunk = new ArrayList<>(MOCK_CHUNK_SIZE);
+        for (long i = 0; i < mocks; i++) {
+            Hl7Workload.Card card = workload.next();
+            chunk.add(new Hl7Mock(card.controlId(), card.message()));
+            if (chunk.size() == MOCK_CHUNK_SIZE || i == mocks - 1) {
+                hl7MockStore.saveAll(chunk);
+                chunk.clear();
+            }
+        }
+        context.getBean(Hl7MockKeyReservoir.class).refresh();
+        System.out.printf("saved %d HL7 messages in %.1f s%n", mocks, (System.nanoTime() - start) / 1e9);
+    }
+
+    /**
+     * send the health cards at the target rate and wait for the last response
+     *
+     * @param uri         URI of POST /patient/read
+     * @param rate        health cards per second
+     * @param warmup      number of health cards sent first, which are not counted
+     * @param messages    number of counted health cards
+     * @param maxInFlight maximum number of open requests
+     * @param timeout     time after which a request counts as failed
+     * @return time in nanoseconds from the first counted send until the last response
+     * @throws InterruptedException is thrown when the driver was interrupted
+     */
+    private long replay(URI uri, int rate, long warmup, long messages, int maxInFlight, Duration timeout) throws InterruptedException {
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        // blocking sends; the dependent actions of sendAsync run on a new thread each when the machine has few cores
+        ExecutorService senders = Executors.newFixedThreadPool(maxInFlight, runnable -> {
+            Thread thread = new Thread(runnable, "replay-sender");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = TimeUnit.SECONDS.toNanos(1) / rate;
+        long start = System.nanoTime();
+        for (long i = 0; i < warmup + messages; i++) {
+            long intendedStart = start + i * interval;
+            boolean counted = i >= warmup;
+            long delay = intendedStart - System.nanoTime();
+            if (delay > 0) {
+                LockSupport.parkNanos(delay);
+            }
+            Hl7Workload.Card card = workload.next();
+            HttpRequest request = HttpRequest.newBuilder(uri)
+                    .header("Content-Type", "text/plain")
+                    .timeout(timeout)
+                    .POST(HttpRequest.BodyPublishers.ofString(card.message()))
+                    .build();
+            inFlight.acquire();
+            senders.execute(() -> {
+                try {
+                    HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+                    if (counted) {
+                        record(card, intendedStart, response.statusCode());
+                    }
+                    if (response.statusCode() == 200 && card.kind() == Hl7Workload.Kind.NEW) {
+                        rememberHl7Id(card, response.body());
+                    }
+                } catch (IOException e) {
+                    if (counted) {
+                        record(card, intendedStart, 0);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    inFlight.release();
+                }
+            });
+        }
+        inFlight.acquire(maxInFlight);
+        senders.shutdown();
+        return System.nanoTime() - (start + warmup * interval);
+    }
+
+    private void record(Hl7Workload.Card card, long intendedStart, int status) {
+        latencies.recordValue(Math.min(MAX_LATENCY, TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - intendedStart)));
+        responses.computeIfAbsent(card.kind() + " " + status, key -> new LongAdder()).increment();
+    }
+
+    /**
+     * take the HL7 id which the application assigned to a new patient, so its next cards carry it
+     *
+     * @param card     card of the new patient
+     * @param response body of the response; the patient as JSON or a message
+     */
+    private void rememberHl7Id(Hl7Workload.Card card, String response) {
+        if (!response.startsWith("{")) {
+            return;
+        }
+        try {
+            JsonNode hl7Id = objectMapper.readTree(response).get("hl7Id");
+            if (hl7Id != null && hl7Id.isTextual()) {
+                workload.assignHl7Id(card.patient(), hl7Id.asText());
+            }
+        } catch (Exception e) {
+            // the card is sent again under its own identifier and found by name and birthday
+        }
+    }
+
+    private void report(PrintStream out, long messages, long duration) {
+        out.printf("%d health cards of %d patients in %.1f s: %.1f cards/s%n", messages, workload.getPatients(),
+                duration / 1e9, messages * 1e9 / duration);
+        new TreeMap<>(responses).forEach((kindAndStatus, count) -> out.printf("  %-22s %d%n", kindAndStatus, count.sum()));
+        out.printf("latency ms: p50 %.2f, p99 %.2f, p999 %.2f, max %.2f%n",
+                latencies.getValueAtPercentile(50) / 1e3, latencies.getValueAtPercentile(99) / 1e3,
+                latencies.getValueAtPercentile(99.9) / 1e3, latencies.getMaxValue() / 1e3);
+    }
+}
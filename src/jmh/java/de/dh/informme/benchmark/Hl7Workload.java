@@ -0,0 +1,229 @@
+package de.dh.informme.benchmark;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * endless stream of health cards read at the terminals, with a configurable mix of new and returning patients
+ * <p>
+ * Patients are numbered; the name and birthday of a patient are derived from its number with {@link Hl7Corpus}, so
+ * only the HL7 ids assigned by the application are kept in memory. The stream is the same for the same seed.
+ */
+final class Hl7Workload {
+
+    /**
+     * kinds of health cards
+     */
+    enum Kind {
+        /**
+         * the first card of a new patient
+         */
+        NEW,
+        /**
+         * a card of a known patient with the same data
+         */
+        RETURNING,
+        /**
+         * a card of a known patient whose address has changed
+         */
+        MISMATCH,
+        /**
+         * a card of a new patient with the name and birthday of a known patient
+         */
+        EXACT_DUPLICATE,
+        /**
+         * a card of a new patient with a slightly different name and the birthday of a known patient
+         */
+        NEAR_DUPLICATE
+    }
+
+    /**
+     * health card
+     *
+     * @param controlId message control id (MSH-10)
+     * @param message   HL7 message
+     * @param kind      kind of the card
+     * @param patient   number of the patient, -1 for duplicates
+     */
+    record Card(String controlId, String message, Kind kind, int patient) {
+    }
+
+    /**
+     * shares of the kinds of cards; the remaining cards are cards of new patients
+     *
+     * @param returning       share of returning patients with the same data
+     * @param mismatches      share of returning patients with a changed address
+     * @param exactDuplicates share of new cards with the name and birthday of a known patient
+     * @param nearDuplicates  share of new cards with a similar name and the birthday of a known patient
+     * @param extraIds        share of all cards with an additional patient identifier in PID-3
+     * @param seed            seed of the random numbers
+     */
+    record Mix(double returning, double mismatches, double exactDuplicates, double nearDuplicates, double extraIds, long seed) {
+
+        /**
+         * read the mix from the system properties workload.returning, workload.mismatches,
+         * workload.exact-duplicates, workload.near-duplicates, workload.extra-ids and workload.seed
+         *
+         * @return mix of the system properties, with defaults for the missing ones
+         */
+        static Mix fromSystemProperties() {
+            return new Mix(
+                    Double.parseDouble(System.getProperty("workload.returning", "0.6")),
+                    Double.parseDouble(System.getProperty("workload.mismatches", "0.05")),
+                    Double.parseDouble(System.getProperty("workload.exact-duplicates", "0.01")),
+                    Double.parseDouble(System.getProperty("workload.near-duplicates", "0.01")),
+                    Double.parseDouble(System.getProperty("workload.extra-ids", "0.1")),
+                    Long.getLong("workload.seed", 42));
+        }
+    }
+
+    private static final String[] FIRST_NAMES = {"Max", "Erika", "Paul", "Anna", "Lukas", "Marie", "Felix", "Sophie"};
+
+    private final Mix mix;
+
+    private final String controlIdPrefix;
+
+    private final SplittableRandom random;
+
+    /**
+     * HL7 ids which the application assigned to the patients, by number of the patient
+     */
+    private final Map<Integer, String> assignedHl7Ids = new ConcurrentHashMap<>();
+
+    /**
+     * addresses of the patients which moved, by number of the patient; the others live at their first address
+     */
+    private final Map<Integer, String> changedStreets = new HashMap<>();
+
+    private int patients = 0;
+
+    private long cards = 0;
+
+    /**
+     * create a workload
+     *
+     * @param mix             shares of the kinds of cards
+     * @param controlIdPrefix prefix of the message control ids, so several workloads do not reuse the same ids
+     */
+    Hl7Workload(Mix mix, String controlIdPrefix) {
+        this.mix = mix;
+        this.controlIdPrefix = controlIdPrefix;
+        this.random = new SplittableRandom(mix.seed());
+    }
+
+    /**
+     * get the message control id of a card
+     *
+     * @param controlId number of the card
+     * @return message control id (MSH-10)
+     */
+    private String controlId(long controlId) {
+        return controlIdPrefix + controlId;
+    }
+
+    /**
+     * get the next card; not thread-safe
+     *
+     * @return next card
+     */
+    Card next() {
+        long controlId = cards++;
+        double kind = random.nextDouble();
+        boolean extraId = random.nextDouble() < mix.extraIds();
+        if (patients == 0) {
+            return newPatient(controlId, extraId);
+        }
+        int knownPatient = random.nextInt(patients);
+        if (kind < mix.returning()) {
+            return knownPatient(controlId, knownPatient, Kind.RETURNING, street(knownPatient), extraId);
+        }
+        kind -= mix.returning();
+        if (kind < mix.mismatches()) {
+            // the application takes over the new address, so the following cards of the patient match again
+            String newStreet = "Newstreet " + random.nextInt(1000);
+            changedStreets.put(knownPatient, newStreet);
+            return knownPatient(controlId, knownPatient, Kind.MISMATCH, newStreet, extraId);
+        }
+        kind -= mix.mismatches();
+        if (kind < mix.exactDuplicates()) {
+            return card(controlId, -1, Kind.EXACT_DUPLICATE, ids("D" + controlId, knownPatient, extraId),
+                    Hl7Corpus.lastName(knownPatient), firstName(knownPatient), street(knownPatient), knownPatient);
+        }
+        kind -= mix.exactDuplicates();
+        if (kind < mix.nearDuplicates()) {
+            return card(controlId, -1, Kind.NEAR_DUPLICATE, ids("D" + controlId, knownPatient, extraId),
+                    misspell(Hl7Corpus.lastName(knownPatient)), firstName(knownPatient), street(knownPatient), knownPatient);
+        }
+        return newPatient(controlId, extraId);
+    }
+
+    /**
+     * remember the HL7 id which the application assigned to a new patient; later cards of the patient carry it
+     *
+     * @param patient number of the patient
+     * @param hl7Id   assigned HL7 id
+     */
+    void assignHl7Id(int patient, String hl7Id) {
+        assignedHl7Ids.putIfAbsent(patient, hl7Id);
+    }
+
+    /**
+     * get the number of new patients of the cards so far
+     *
+     * @return number of patients
+     */
+    int getPatients() {
+        return patients;
+    }
+
+    private Card newPatient(long controlId, boolean extraId) {
+        int patient = patients++;
+        return card(controlId, patient, Kind.NEW, ids("W" + patient, patient, extraId),
+                Hl7Corpus.lastName(patient), firstName(patient), street(patient), patient);
+    }
+
+    private Card knownPatient(long controlId, int patient, Kind kind, String street, boolean extraId) {
+        // until the application has answered the first card, the patient is found by name and birthday
+        String hl7Id = assignedHl7Ids.getOrDefault(patient, "W" + patient);
+        return card(controlId, patient, kind, ids(hl7Id, patient, extraId), Hl7Corpus.lastName(patient), firstName(patient), street, patient);
+    }
+
+    private Card card(long controlId, int patient, Kind kind, String[] ids, String lastName, String firstName, String street, int birthdayOf) {
+        String message = Hl7Corpus.admission(controlId(controlId), ids, lastName, firstName, street, Hl7Corpus.birthday(birthdayOf),
+                String.valueOf(1000000 + birthdayOf % 9000000));
+        return new Card(controlId(controlId), message, kind, patient);
+    }
+
+    private String street(int patient) {
+        return changedStreets.getOrDefault(patient, "Mockstreet " + patient % 100);
+    }
+
+    private String[] ids(String hl7Id, int patient, boolean extraId) {
+        // an additional identifier like the number of a second insurance
+        return extraId ? new String[]{hl7Id, "X" + patient} : new String[]{hl7Id};
+    }
+
+    private String firstName(int patient) {
+        return FIRST_NAMES[patient % FIRST_NAMES.length];
+    }
+
+    /**
+     * change the last vowel of a name, which keeps its phonetic code
+     *
+     * @param name last name
+     * @return similar name
+     */
+    private static String misspell(String name) {
+        char[] letters = name.toCharArray();
+        for (int i = letters.length - 1; i > 0; i--) {
+            int vowel = "aeio".indexOf(letters[i]);
+            if (vowel >= 0) {
+                letters[i] = "eioa".charAt(vowel);
+                return new String(letters);
+            }
+        }
+        return name + "e";
+    }
+}
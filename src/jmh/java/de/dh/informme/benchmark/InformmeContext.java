@@ -0,0 +1,58 @@
+package de.dh.informme.benchmark;
+
+import de.dh.informme.InformmeApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * starts the application on an embedded in-memory database
+ */
+final class InformmeContext {
+
+    private InformmeContext() {
+    }
+
+    /**
+     * start the application
+     *
+     * @param properties additional properties as "key=value"
+     * @return application context, has to be closed after the trial
+     */
+    static ConfigurableApplicationContext start(String... properties) {
+        return start(WebApplicationType.NONE, properties);
+    }
+
+    /**
+     * start the application with a web server on a random port, for benchmarks which render views
+     *
+     * @param properties additional properties as "key=value"
+     * @return web application context, has to be closed after the trial
+     */
+    static ConfigurableApplicationContext startWithWebServer(String... properties) {
+        List<String> webProperties = new ArrayList<>(List.of(properties));
+        webProperties.add("server.port=0");
+        return start(WebApplicationType.SERVLET, webProperties.toArray(new String[0]));
+    }
+
+    private static ConfigurableApplicationContext start(WebApplicationType webApplicationType, String... properties) {
+        // command line arguments take precedence over the application.properties
+        List<String> arguments = new ArrayList<>(List.of(
+                "--spring.datasource.url=jdbc:h2:mem:benchmark;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+                "--spring.datasource.username=sa",
+                "--spring.datasource.password=",
+                "--spring.jpa.hibernate.ddl-auto=create-drop",
+                "--informme.mllp.enabled=false",
+                "--logging.level.root=WARN"));
+        for (String property : properties) {
+            arguments.add("--" + property);
+        }
+        return new SpringApplicationBuilder(InformmeApplication.class)
+                .web(webApplicationType)
+                .logStartupInfo(false)
+                .run(arguments.toArray(new String[0]));
+    }
+}
@@ -0,0 +1,89 @@
+package de.dh.informme.benchmark;
+
+import de.dh.informme.doctorsOffice.patient.Patient;
+import de.dh.informme.doctorsOffice.patient.PatientDuplicateIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * search for similar patients in {@link PatientDuplicateIndex}; the time should not grow with the number of patients
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class PatientDuplicateIndexBenchmark {
+
+    private static final String[] FIRST_NAMES = {"Max", "Anna", "Paul", "Marie", "Felix", "Sophie", "Jonas", "Laura"};
+
+    private static final int QUERIES = 1024;
+
+    /**
+     * number of patients in the index
+     */
+    @Param({"100000", "3000000"})
+    private int patients;
+
+    private ConfigurableApplicationContext context;
+
+    private PatientDuplicateIndex patientDuplicateIndex;
+
+    private final String[] lastNames = new String[QUERIES];
+
+    private final String[] firstNames = new String[QUERIES];
+
+    private final Date[] birthdays = new Date[QUERIES];
+
+    private int next = 0;
+
+    @Setup
+    public void setUp() throws ParseException {
+        context = InformmeContext.start();
+        patientDuplicateIndex = context.getBean(PatientDuplicateIndex.class);
+        SimpleDateFormat formatter = new SimpleDateFormat("yyyyMMdd");
+        // the patients are only added to the index, not to the database
+        for (int i = 0; i < patients; i++) {
+            Patient patient = new Patient((long) i + 1, null, FIRST_NAMES[i % FIRST_NAMES.length], Hl7Corpus.lastName(i),
+                    formatter.parse(Hl7Corpus.birthday(i)), null, null, null, null, null, null, null, null);
+            patientDuplicateIndex.add(patient);
+        }
+        // every second query is a known patient with a typo in the last name, the others are unknown patients
+        for (int i = 0; i < QUERIES; i++) {
+            long number = i % 2 == 0 ? (long) i * patients / QUERIES : patients + i;
+            String lastName = Hl7Corpus.lastName(number);
+            lastNames[i] = i % 2 == 0 ? lastName.substring(0, lastName.length() - 1) : lastName;
+            firstNames[i] = FIRST_NAMES[(int) (number % FIRST_NAMES.length)];
+            birthdays[i] = formatter.parse(Hl7Corpus.birthday(number));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Set<Long> findSimilarPatientIds() {
+        next = (next + 1) % QUERIES;
+        return patientDuplicateIndex.findSimilarPatientIds(firstNames[next], lastNames[next], birthdays[next]);
+    }
+}
@@ -0,0 +1,88 @@
+package de.dh.informme.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.dh.informme.doctorsOffice.patient.Patient;
+import de.dh.informme.doctorsOffice.patient.PatientRepository;
+import de.dh.informme.doctorsOffice.patient.PatientService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * GET /patient/get/{id}: loading and serializing a managed patient compared to the read-only projection
+ * <p>
+ * Run with "-prof gc" to see the allocation per lookup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PatientLookupBenchmark {
+
+    private static final int PATIENTS = 1000;
+
+    private ConfigurableApplicationContext context;
+
+    private PatientService patientService;
+
+    private ObjectMapper objectMapper;
+
+    private final List<Long> patientIds = new ArrayList<>();
+
+    @Setup
+    public void setUp() {
+        context = InformmeContext.start();
+        patientService = context.getBean(PatientService.class);
+        objectMapper = context.getBean(ObjectMapper.class);
+        List<Patient> patients = new ArrayList<>();
+        for (int i = 0; i < PATIENTS; i++) {
+            patients.add(new Patient(null, "seed" + i, "Max", Hl7Corpus.lastName(i), new Date(0), "Mockstreet 1, 12345 Mockcity", "+49 123 1234567", "max@mail.de", "M", null, null, null, null));
+        }
+        for (Patient patient : context.getBean(PatientRepository.class).saveAll(patients)) {
+            patientIds.add(patient.getPatientId());
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    /**
+     * load the patient as managed entity, like before
+     */
+    @Benchmark
+    public String entity() throws JsonProcessingException {
+        return objectMapper.writeValueAsString(patientService.getPatientById(randomPatientId()));
+    }
+
+    /**
+     * load the data of the patient without an entity
+     */
+    @Benchmark
+    public String projection() throws JsonProcessingException {
+        return objectMapper.writeValueAsString(patientService.getPatientViewById(randomPatientId()));
+    }
+
+    private Long randomPatientId() {
+        return patientIds.get(ThreadLocalRandom.current().nextInt(patientIds.size()));
+    }
+}
@@ -0,0 +1,81 @@
+package de.dh.informme.benchmark;
+
+import de.dh.informme.doctorsOffice.patient.PatientPageView;
+import de.dh.informme.doctorsOffice.patient.PatientView;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.WebApplicationContext;
+import org.springframework.web.servlet.DispatcherServlet;
+import org.springframework.web.servlet.View;
+import org.springframework.web.servlet.i18n.FixedLocaleResolver;
+import org.thymeleaf.spring6.view.ThymeleafViewResolver;
+
+import java.sql.Timestamp;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * rendering the patient page with the Thymeleaf view and with the prerendered {@link PatientPageView}
+ * <p>
+ * Run with "-prof gc" to see the allocation per page.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PatientPageBenchmark {
+
+    @Param({"thymeleaf", "prerendered"})
+    private String view;
+
+    private final Map<String, Object> model = Map.of("patient", new PatientView(1L, "123456", "Max", "Mustermann",
+            Timestamp.valueOf("1990-01-01 00:00:00"), "Mockstreet 1, 12345 Mockcity", "+49 123 1234567", null, "M", 0L, null));
+
+    private final FixedLocaleResolver localeResolver = new FixedLocaleResolver(Locale.GERMANY);
+
+    private ConfigurableApplicationContext context;
+
+    private WebApplicationContext webApplicationContext;
+
+    private View patientPage;
+
+    @Setup
+    public void setUp() throws Exception {
+        context = InformmeContext.startWithWebServer();
+        webApplicationContext = (WebApplicationContext) context;
+        patientPage = "prerendered".equals(view)
+                ? context.getBean(PatientPageView.class)
+                : context.getBean(ThymeleafViewResolver.class).resolveViewName("patient/patient_show_data", Locale.GERMANY);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public int render() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest(webApplicationContext.getServletContext(), "GET", "/patient/show/1");
+        request.setAttribute(DispatcherServlet.WEB_APPLICATION_CONTEXT_ATTRIBUTE, webApplicationContext);
+        request.setAttribute(DispatcherServlet.LOCALE_RESOLVER_ATTRIBUTE, localeResolver);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        patientPage.render(model, request, response);
+        return response.getContentLength();
+    }
+}
@@ -0,0 +1,90 @@
+package de.dh.informme.benchmark;
+
+import de.dh.informme.doctorsOffice.patient.Patient;
+import de.dh.informme.doctorsOffice.patient.PatientRepository;
+import de.dh.informme.doctorsOffice.patient.PatientService;
+import de.dh.informme.hl7Mock.Hl7Mock;
+import de.dh.informme.hl7Mock.Hl7MockKeyReservoir;
+import de.dh.informme.hl7Mock.Hl7MockService;
+import de.dh.informme.hl7Mock.Hl7MockStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * picking random patients and HL7 mocks; the time should not grow with the number of rows
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RandomSamplingBenchmark {
+
+    private static final int CHUNK_SIZE = 1000;
+
+    /**
+     * number of patients and of HL7 mocks in the database
+     */
+    @Param({"1000", "100000"})
+    private int rows;
+
+    private ConfigurableApplicationContext context;
+
+    private PatientService patientService;
+
+    private Hl7MockService hl7MockService;
+
+    @Setup
+    public void setUp() {
+        context = InformmeContext.start();
+        patientService = context.getBean(PatientService.class);
+        hl7MockService = context.getBean(Hl7MockService.class);
+        PatientRepository patientRepository = context.getBean(PatientRepository.class);
+        Hl7MockStore hl7MockStore = context.getBean(Hl7MockStore.class);
+
+        for (int start = 0; start < rows; start += CHUNK_SIZE) {
+            List<Patient> patients = new ArrayList<>();
+            List<Hl7Mock> hl7Mocks = new ArrayList<>();
+            for (int i = start; i < Math.min(start + CHUNK_SIZE, rows); i++) {
+                String lastName = Hl7Corpus.lastName(i);
+                patients.add(new Patient(null, "seed" + i, "Max", lastName, new Date(0), "Mockstreet 1, 12345 Mockcity", "+49 123 1234567", "max@mail.de", "M", null, null, null, null));
+                hl7Mocks.add(new Hl7Mock("seed" + i, Hl7Corpus.admission("seed" + i, "seed" + i, lastName, "Max", "Mockstreet 1")));
+            }
+            patientRepository.saveAll(patients);
+            hl7MockStore.saveAll(hl7Mocks);
+        }
+        context.getBean(Hl7MockKeyReservoir.class).refresh();
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Long randomPatientId() {
+        return patientService.getRandomPatientId();
+    }
+
+    @Benchmark
+    public Hl7Mock randomHl7Mock() {
+        return hl7MockService.getRandomHl7Mock();
+    }
+}
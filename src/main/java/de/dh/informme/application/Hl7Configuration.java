@@ -0,0 +1,80 @@
+package de.dh.informme.application;
+
+import ca.uhn.hl7v2.DefaultHapiContext;
+import ca.uhn.hl7v2.HL7Exception;
+import ca.uhn.hl7v2.HapiContext;
+import ca.uhn.hl7v2.model.Message;
+import ca.uhn.hl7v2.parser.Parser;
+import ca.uhn.hl7v2.validation.builder.support.DefaultValidationBuilder;
+import ca.uhn.hl7v2.validation.builder.support.DefaultValidationWithoutTNBuilder;
+import ca.uhn.hl7v2.validation.builder.support.NoValidationBuilder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * provides one shared HAPI context and pipe parser for the whole application
+ */
+@Configuration
+public class Hl7Configuration {
+
+    /**
+     * message which is parsed and encoded once on startup, so that the v2.6 ADT model classes are already loaded
+     * when the first health card is read
+     */
+    private static final String WARM_UP_MESSAGE = "MSH|^~\\&|InformMe|InformMe|InformMe|InformMe|202401041230||ADT^A01|0|P|2.6\r" +
+            "EVN|A01|202401041230|||\r" +
+            "PID|1||000000^^^InformMe^MR||Mustermann^Max^^^Herr||19900101|M|||Mockstreet 1^^Mockcity^^12345^Deutschland||^PRN^^max.mustermann@mail.de^49^123^1234567|||||\r" +
+            "PV1|1|I|";
+
+    /**
+     * validation level of the parser: "none", "default" or "strict"
+     */
+    @Value("${informme.hl7.validation:default}")
+    private String validation;
+
+    /**
+     * create the HAPI context which is shared by all services
+     *
+     * @return HapiContext; configured and pre-warmed context
+     * @throws HL7Exception is thrown when the warm-up message could not be parsed
+     */
+    @Bean
+    public HapiContext hapiContext() throws HL7Exception {
+        HapiContext context = new DefaultHapiContext();
+        switch (validation.toLowerCase()) {
+            case "none" -> {
+                context.setValidationRuleBuilder(new NoValidationBuilder());
+                context.getParserConfiguration().setValidating(false);
+            }
+            case "strict" -> context.setValidationRuleBuilder(new DefaultValidationBuilder());
+            case "default" -> context.setValidationRuleBuilder(new DefaultValidationWithoutTNBuilder());
+            default -> throw new IllegalArgumentException("Unknown HL7 validation level: " + validation);
+        }
+        warmUp(context);
+        return context;
+    }
+
+    /**
+     * create the pipe parser of the shared context; the parser is thread safe and can be used by all services
+     *
+     * @param hapiContext shared HAPI context
+     * @return Parser; pipe parser
+     */
+    @Bean
+    public Parser pipeParser(HapiContext hapiContext) {
+        return hapiContext.getPipeParser();
+    }
+
+    /**
+     * load the v2.6 ADT structures by parsing and encoding a message once
+     *
+     * @param context context to warm up
+     * @throws HL7Exception is thrown when the warm-up message could not be parsed
+     */
+    private void warmUp(HapiContext context) throws HL7Exception {
+        Parser parser = context.getPipeParser();
+        Message message = parser.parse(WARM_UP_MESSAGE);
+        parser.encode(message);
+    }
+}
@@ -18,6 +18,11 @@ import java.util.Locale;
 @Configuration
 public class Internationalization implements WebMvcConfigurer {
 
+    /**
+     * basename of the messages_xx.properties files
+     */
+    public static final String MESSAGES = "messages";
+
     /**
      * set path of languages_xx.properties files which are used for internationalization
      *
@@ -26,7 +31,7 @@ public class Internationalization implements WebMvcConfigurer {
     @Bean
     public MessageSource messageSource() {
         ResourceBundleMessageSource messageSource = new ResourceBundleMessageSource();
-        messageSource.setBasename("messages");
+        messageSource.setBasename(MESSAGES);
         messageSource.setDefaultEncoding("UTF-8");
         return messageSource;
     }
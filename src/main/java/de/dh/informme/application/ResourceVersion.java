@@ -0,0 +1,47 @@
+package de.dh.informme.application;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Date;
+
+/**
+ * version and time of the last change of a stored resource, used to answer conditional GET requests without loading
+ * the resource
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ResourceVersion {
+
+    /**
+     * version of the entity, increased by every update
+     */
+    private Long version;
+
+    /**
+     * time of the last insert or update, null for rows saved before it was introduced
+     */
+    private Date lastModified;
+
+    /**
+     * get the strong ETag of the resource
+     *
+     * @param version version of the entity
+     * @return quoted version
+     */
+    public static String etag(Long version) {
+        return "\"" + version + "\"";
+    }
+
+    /**
+     * get the time of the last change as expected by {@link org.springframework.web.context.request.WebRequest#checkNotModified(String, long)}
+     *
+     * @param lastModified time of the last change
+     * @return milliseconds since the epoch or -1 if the time is unknown
+     */
+    public static long lastModifiedMillis(Date lastModified) {
+        return lastModified == null ? -1 : lastModified.getTime();
+    }
+}
@@ -0,0 +1,29 @@
+package de.dh.informme.application;
+
+import org.apache.coyote.ProtocolHandler;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * lets Tomcat handle the requests on virtual threads if they are enabled, see {@link WorkerThreads}
+ */
+@Configuration
+public class TomcatConfiguration {
+
+    /**
+     * replace the thread pool of Tomcat by one virtual thread per request; server.tomcat.threads.max does not apply
+     * then, the number of concurrent requests is limited by server.tomcat.max-connections
+     *
+     * @param workerThreads factory for the worker threads
+     * @return customizer which sets the executor of the protocol handler
+     */
+    @Bean
+    public TomcatProtocolHandlerCustomizer<ProtocolHandler> virtualThreadProtocolHandler(WorkerThreads workerThreads) {
+        return protocolHandler -> {
+            if (workerThreads.isVirtual()) {
+                protocolHandler.setExecutor(workerThreads.newExecutor("http-handler-", 0));
+            }
+        };
+    }
+}
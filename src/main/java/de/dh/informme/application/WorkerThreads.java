@@ -0,0 +1,108 @@
+package de.dh.informme.application;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * creates the threads which handle requests and process health cards, either platform threads or virtual threads
+ * <p>
+ * Virtual threads need Java 21; the application is built for Java 17, so they are created by reflection. If they are
+ * enabled on an older runtime, platform threads are used and a warning is logged.
+ */
+@Slf4j
+@Component
+public class WorkerThreads {
+
+    /**
+     * run the request handling and the processing of health cards on virtual threads
+     */
+    @Value("${informme.execution.virtual-threads:false}")
+    private boolean virtualThreadsEnabled;
+
+    /**
+     * Executors.newThreadPerTaskExecutor(ThreadFactory), null if virtual threads are not used
+     */
+    private Method newThreadPerTaskExecutor;
+
+    /**
+     * Thread.ofVirtual(), null if virtual threads are not used
+     */
+    private Method ofVirtual;
+
+    private Method name;
+
+    private Method factory;
+
+    @PostConstruct
+    public void init() {
+        if (!virtualThreadsEnabled) {
+            return;
+        }
+        try {
+            Class<?> builder = Class.forName("java.lang.Thread$Builder");
+            name = builder.getMethod("name", String.class, long.class);
+            factory = builder.getMethod("factory");
+            newThreadPerTaskExecutor = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+            ofVirtual = Thread.class.getMethod("ofVirtual");
+            log.info("Requests and health cards are processed on virtual threads");
+        } catch (ReflectiveOperationException e) {
+            log.warn("Virtual threads need Java 21 or newer, running on platform threads with Java {}", Runtime.version());
+        }
+    }
+
+    /**
+     * check whether virtual threads are used
+     *
+     * @return true if virtual threads are enabled and supported by the runtime
+     */
+    public boolean isVirtual() {
+        return ofVirtual != null;
+    }
+
+    /**
+     * get a factory for named worker threads
+     *
+     * @param prefix prefix of the thread names, followed by a number
+     * @return factory for virtual threads if they are used, otherwise for platform threads
+     */
+    public ThreadFactory threadFactory(String prefix) {
+        if (isVirtual()) {
+            try {
+                return (ThreadFactory) factory.invoke(name.invoke(ofVirtual.invoke(null), prefix, 0L));
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("Could not create a virtual thread factory", e);
+            }
+        }
+        AtomicLong number = new AtomicLong();
+        return runnable -> new Thread(runnable, prefix + number.getAndIncrement());
+    }
+
+    /**
+     * create an executor for the worker threads
+     * <p>
+     * With virtual threads, every task gets its own thread; the concurrency is limited by the connection pool of the
+     * database instead of the number of threads.
+     *
+     * @param prefix          prefix of the thread names
+     * @param platformThreads number of threads if platform threads are used
+     * @return executor, has to be shut down by the caller
+     */
+    public ExecutorService newExecutor(String prefix, int platformThreads) {
+        if (isVirtual()) {
+            try {
+                return (ExecutorService) newThreadPerTaskExecutor.invoke(null, threadFactory(prefix));
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("Could not create a virtual thread executor", e);
+            }
+        }
+        return Executors.newFixedThreadPool(platformThreads, threadFactory(prefix));
+    }
+}
@@ -0,0 +1,66 @@
+package de.dh.informme.doctorsOffice.hl7;
+
+import ca.uhn.hl7v2.model.Message;
+import ca.uhn.hl7v2.model.v26.message.ADT_A01;
+import ca.uhn.hl7v2.model.v26.message.ADT_A05;
+import ca.uhn.hl7v2.parser.Parser;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Set;
+
+/**
+ * reads the patient of admissions, registrations and demographic updates
+ * <p>
+ * A01, A04 and A08 have the structure ADT_A01, A28 and A31 the structure ADT_A05; both carry the patient in the PID
+ * segment, so all of them are processed like a health card.
+ */
+@Component
+public class AdtMessageHandler implements Hl7MessageHandler {
+
+    @Autowired
+    private Hl7Parser hl7Parser;
+
+    @Autowired
+    private Hl7FastPidExtractor hl7FastPidExtractor;
+
+    @Autowired
+    private Parser pipeParser;
+
+    /**
+     * extract the PID data without HAPI where possible, see {@link Hl7FastPidExtractor}
+     */
+    @Value("${informme.hl7.fast-pid-extraction:false}")
+    private boolean fastPidExtraction;
+
+    @Override
+    public Set<String> getMessageTypes() {
+        return Set.of("ADT^A01", "ADT^A04", "ADT^A08", "ADT^A28", "ADT^A31");
+    }
+
+    /**
+     * extract the patient data of a message, with the fast extractor if it is enabled and HAPI otherwise
+     *
+     * @param hl7MessageAsString HL7 message
+     * @return patient data of the PID segment
+     * @throws Exception is thrown when the message could not be parsed or is no ADT_A01 or ADT_A05 message
+     */
+    @Override
+    public Hl7PatientData extractPatientData(String hl7MessageAsString) throws Exception {
+        if (fastPidExtraction) {
+            Hl7PatientData patientData = hl7FastPidExtractor.extract(hl7MessageAsString);
+            if (patientData != null) {
+                return patientData;
+            }
+        }
+        Message message = pipeParser.parse(hl7MessageAsString);
+        if (message instanceof ADT_A01 adtMessage) {
+            return hl7Parser.getPatientData(adtMessage.getPID());
+        } else if (message instanceof ADT_A05 adtMessage) {
+            return hl7Parser.getPatientData(adtMessage.getPID());
+        } else {
+            throw new Exception("Message has wrong format.");
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package de.dh.informme.doctorsOffice.hl7;
+
+import ca.uhn.hl7v2.AcknowledgmentCode;
+import ca.uhn.hl7v2.HL7Exception;
+import ca.uhn.hl7v2.model.Message;
+import ca.uhn.hl7v2.model.Segment;
+import ca.uhn.hl7v2.parser.Parser;
+import ca.uhn.hl7v2.util.DeepCopy;
+import ca.uhn.hl7v2.util.Terser;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+@Service
+public class Hl7AckService {
+
+    @Autowired
+    private Parser pipeParser;
+
+    /**
+     * generate an acknowledgement for a given HL7 message; only the MSH segment of the message is parsed
+     *
+     * @param hl7MessageAsString    HL7 message to acknowledge
+     * @param code                  acknowledgement code, e.g. AA, AE or AR
+     * @param text                  text for MSA-3, may be null
+     * @return encoded ACK message
+     */
+    public String generateAck(String hl7MessageAsString, AcknowledgmentCode code, String text) {
+        try {
+            Segment msh = pipeParser.getCriticalResponseData(hl7MessageAsString);
+            // the parsed header is not part of its message yet, the ACK is generated from the message's MSH
+            Message message = msh.getMessage();
+            DeepCopy.copy(msh, (Segment) message.get("MSH"));
+            Message ack = message.generateACK(code, null);
+            if (text != null) {
+                new Terser(ack).set("MSA-3", text);
+            }
+            return pipeParser.encode(ack);
+        } catch (HL7Exception | IOException | RuntimeException e) {
+            // the MSH segment itself could not be read, so the ACK can not refer to the message; a truncated MSH
+            // segment makes the parser fail with a runtime exception
+            return generateRejectWithoutHeader(e.getMessage());
+        }
+    }
+
+    /**
+     * build a reject for messages without a readable MSH segment
+     *
+     * @param text reason of the reject
+     * @return encoded ACK message
+     */
+    public String generateRejectWithoutHeader(String text) {
+        String timestamp = new SimpleDateFormat("yyyyMMddHHmmss").format(new Date());
+        return "MSH|^~\\&|InformMe|Digital Health Praxis|||" + timestamp + "||ACK|" + timestamp + "|P|2.6\r" +
+                "MSA|" + AcknowledgmentCode.AR.name() + "||" + (text != null ? text.replaceAll("[|\\r\\n^~\\\\&]", " ") : "");
+    }
+}
@@ -0,0 +1,42 @@
+package de.dh.informme.doctorsOffice.hl7;
+
+import de.dh.informme.doctorsOffice.patient.Patient;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * result of one message of a health card batch
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class Hl7BatchResult {
+
+    /**
+     * possible outcomes of a single message
+     */
+    public enum Status {
+        OK, DUPLICATE, DISMATCH, UNSUPPORTED, PARSE_ERROR, ERROR
+    }
+
+    /**
+     * position of the message in the batch, starting at 0
+     */
+    private int index;
+
+    /**
+     * outcome of the message
+     */
+    private Status status;
+
+    /**
+     * found or created patient, only set if the status is OK
+     */
+    private Patient patient;
+
+    /**
+     * error message, only set if the status is not OK
+     */
+    private String message;
+}
@@ -0,0 +1,158 @@
+package de.dh.informme.doctorsOffice.hl7;
+
+import ca.uhn.hl7v2.HL7Exception;
+import de.dh.informme.application.WorkerThreads;
+import de.dh.informme.doctorsOffice.patient.Patient;
+import de.dh.informme.error.DismatchError;
+import de.dh.informme.error.DuplicatePatientError;
+import de.dh.informme.error.UnsupportedMessageTypeError;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+@Service
+public class Hl7BatchService {
+
+    /**
+     * segments which only frame a batch and do not belong to a single message
+     */
+    private static final List<String> BATCH_SEGMENTS = List.of("FHS", "BHS", "BTS", "FTS");
+
+    @Autowired
+    private Hl7Service hl7Service;
+
+    @Autowired
+    private WorkerThreads workerThreads;
+
+    /**
+     * number of worker threads processing the messages of a batch
+     */
+    @Value("${informme.hl7.batch.threads:4}")
+    private int threads;
+
+    /**
+     * number of messages which may wait for a worker before the requesting thread processes them itself
+     */
+    @Value("${informme.hl7.batch.queue-capacity:100}")
+    private int queueCapacity;
+
+    private ThreadPoolExecutor executor;
+
+    @PostConstruct
+    public void startExecutor() {
+        executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), workerThreads.threadFactory("hl7-batch-"), new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    @PreDestroy
+    public void stopExecutor() {
+        executor.shutdown();
+    }
+
+    /**
+     * process all messages of a batch in parallel
+     *
+     * @param batch     one or more HL7 messages, optionally framed by FHS/BHS segments
+     * @param autoMatch update the patient's data if there are dismatches
+     * @return one result per message in the order of the batch
+     */
+    public List<Hl7BatchResult> processBatch(String batch, boolean autoMatch) {
+        List<String> messages = splitBatch(batch);
+        List<Future<Hl7BatchResult>> futures = new ArrayList<>(messages.size());
+        for (int i = 0; i < messages.size(); i++) {
+            int index = i;
+            String message = messages.get(i);
+            futures.add(executor.submit(() -> processSingleMessage(index, message, autoMatch)));
+        }
+
+        List<Hl7BatchResult> results = new ArrayList<>(futures.size());
+        for (int i = 0; i < futures.size(); i++) {
+            try {
+                results.add(futures.get(i).get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                results.add(new Hl7BatchResult(i, Hl7BatchResult.Status.ERROR, null, "Processing was interrupted."));
+            } catch (ExecutionException e) {
+                results.add(new Hl7BatchResult(i, Hl7BatchResult.Status.ERROR, null, e.getCause().getMessage()));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * split a batch into single messages; every MSH segment starts a new message
+     *
+     * @param batch one or more HL7 messages
+     * @return single messages with "\r" as segment separator
+     */
+    public List<String> splitBatch(String batch) {
+        List<String> messages = new ArrayList<>();
+        StringBuilder currentMessage = null;
+        for (String segment : batch.split("[\r\n]+")) {
+            String trimmedSegment = segment.strip();
+            if (trimmedSegment.isEmpty() || BATCH_SEGMENTS.contains(segmentName(trimmedSegment))) {
+                continue;
+            }
+            if (segmentName(trimmedSegment).equals("MSH")) {
+                if (currentMessage != null) {
+                    messages.add(currentMessage.toString());
+                }
+                currentMessage = new StringBuilder(trimmedSegment);
+            } else if (currentMessage != null) {
+                currentMessage.append('\r').append(trimmedSegment);
+            }
+        }
+        if (currentMessage != null) {
+            messages.add(currentMessage.toString());
+        }
+        return messages;
+    }
+
+    /**
+     * process one message of a batch without throwing
+     *
+     * @param index     position of the message in the batch
+     * @param message   HL7 message
+     * @param autoMatch update the patient's data if there are dismatches
+     * @return result of the message
+     */
+    private Hl7BatchResult processSingleMessage(int index, String message, boolean autoMatch) {
+        try {
+            Patient patient = hl7Service.processMessage(message, autoMatch);
+            if (patient != null) {
+                return new Hl7BatchResult(index, Hl7BatchResult.Status.OK, patient, null);
+            }
+            return new Hl7BatchResult(index, Hl7BatchResult.Status.ERROR, null, "Patient not found");
+        } catch (UnsupportedMessageTypeError e) {
+            return new Hl7BatchResult(index, Hl7BatchResult.Status.UNSUPPORTED, null, e.getMessage());
+        } catch (HL7Exception e) {
+            return new Hl7BatchResult(index, Hl7BatchResult.Status.PARSE_ERROR, null, "Error while parsing the message.");
+        } catch (DuplicatePatientError e) {
+            return new Hl7BatchResult(index, Hl7BatchResult.Status.DUPLICATE, null, e.getMessage());
+        } catch (DismatchError e) {
+            return new Hl7BatchResult(index, Hl7BatchResult.Status.DISMATCH, null, e.getMessage());
+        } catch (Exception e) {
+            return new Hl7BatchResult(index, Hl7BatchResult.Status.ERROR, null, e.getMessage());
+        }
+    }
+
+    /**
+     * get the name of a segment
+     *
+     * @param segment segment as String
+     * @return first three characters of the segment
+     */
+    private String segmentName(String segment) {
+        return segment.length() < 3 ? segment : segment.substring(0, 3);
+    }
+}
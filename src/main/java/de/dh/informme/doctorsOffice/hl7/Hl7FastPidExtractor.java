@@ -0,0 +1,240 @@
+package de.dh.informme.doctorsOffice.hl7;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * extracts the patient data of an ADT message directly from the pipe-delimited String
+ * <p>
+ * The values are the same as those of the {@link Hl7Parser} getters on a HAPI PID segment, but no HAPI object
+ * model is built. HAPI validation rules are not applied. Messages which are not plain v2.6 ADT messages of the
+ * trigger events in {@link #MESSAGE_STRUCTURES} or which need escaping or other special handling are not extracted,
+ * those have to be parsed with HAPI.
+ */
+@Service
+public class Hl7FastPidExtractor {
+
+    /**
+     * message structures of the extracted trigger events; the PID segment is the same in all of them
+     */
+    static final Map<String, String> MESSAGE_STRUCTURES = Map.of(
+            "A01", "ADT_A01", "A04", "ADT_A01", "A08", "ADT_A01",
+            "A28", "ADT_A05", "A31", "ADT_A05");
+
+    @Autowired
+    private Hl7Parser hl7Parser;
+
+    /**
+     * extract the patient data of a message
+     *
+     * @param hl7MessageAsString HL7 message
+     * @return patient data or null if the message has to be parsed with HAPI
+     * @throws ParseException is thrown when the birthday could not be parsed
+     */
+    public Hl7PatientData extract(String hl7MessageAsString) throws ParseException {
+        if (hl7MessageAsString.length() < 8 || !hl7MessageAsString.startsWith("MSH") || hl7MessageAsString.indexOf('\n') >= 0) {
+            return null;
+        }
+        char fieldSeparator = hl7MessageAsString.charAt(3);
+        int encodingCharactersEnd = hl7MessageAsString.indexOf(fieldSeparator, 4);
+        if (encodingCharactersEnd != 8) {
+            return null;
+        }
+        char componentSeparator = hl7MessageAsString.charAt(4);
+        char repetitionSeparator = hl7MessageAsString.charAt(5);
+        char escapeCharacter = hl7MessageAsString.charAt(6);
+        char subcomponentSeparator = hl7MessageAsString.charAt(7);
+        Parts parts = new Parts(repetitionSeparator, componentSeparator, subcomponentSeparator);
+
+        String msh = null;
+        String pid = null;
+        for (String segment : split(hl7MessageAsString, '\r')) {
+            if (segment == null) {
+                continue;
+            }
+            if (!hasValidSegmentName(segment, fieldSeparator)) {
+                return null;
+            }
+            if (segment.startsWith("MSH")) {
+                if (msh != null) {
+                    return null;
+                }
+                msh = segment;
+            } else if (segment.startsWith("PID")) {
+                if (pid != null) {
+                    return null;
+                }
+                pid = segment;
+            }
+        }
+        if (pid == null || pid.indexOf(escapeCharacter) >= 0) {
+            return null;
+        }
+
+        // MSH-1 is the field separator itself, so MSH-n is at index n - 1
+        List<String> mshFields = split(msh, fieldSeparator);
+        String messageTypeField = parts.firstRepetition(field(mshFields, 8));
+        String messageType = parts.component(messageTypeField, 0);
+        String triggerEvent = parts.component(messageTypeField, 1);
+        String messageStructure = parts.component(messageTypeField, 2);
+        String version = parts.component(parts.firstRepetition(field(mshFields, 11)), 0);
+        String expectedStructure = triggerEvent != null ? MESSAGE_STRUCTURES.get(triggerEvent) : null;
+        if (!"ADT".equals(messageType) || expectedStructure == null || !"2.6".equals(version)
+                || (messageStructure != null && !expectedStructure.equals(messageStructure))) {
+            return null;
+        }
+
+        List<String> pidFields = split(pid, fieldSeparator);
+
+        List<String> hl7Ids = new ArrayList<>();
+        for (String identifier : split(field(pidFields, 3), repetitionSeparator)) {
+            hl7Ids.add(parts.component(identifier, 0));
+        }
+
+        String name = parts.firstRepetition(field(pidFields, 5));
+        String firstName = parts.component(name, 1);
+        String lastName = parts.component(name, 0);
+
+        String birthdayValue = parts.component(parts.firstRepetition(field(pidFields, 7)), 0);
+        if (birthdayValue == null) {
+            return null;
+        }
+
+        String sex = parts.component(parts.firstRepetition(field(pidFields, 8)), 0);
+
+        List<String> addresses = split(field(pidFields, 11), repetitionSeparator);
+        String address = "Invalid";
+        if (!addresses.isEmpty()) {
+            String firstAddress = addresses.get(0);
+            String street = parts.component(firstAddress, 0);
+            String city = parts.component(firstAddress, 2);
+            String postalCode = parts.component(firstAddress, 4);
+            String country = parts.component(firstAddress, 5);
+            if (street != null && postalCode != null && city != null) {
+                address = street + ", " + postalCode + " " + city + (country != null ? ", " + country : "");
+            }
+        }
+
+        List<String> phoneNumbersHome = split(field(pidFields, 13), repetitionSeparator);
+        String telephone = null;
+        String email = null;
+        if (!phoneNumbersHome.isEmpty()) {
+            String phoneNumber = phoneNumbersHome.get(0);
+            String countryCode = parts.component(phoneNumber, 4);
+            String areaCode = parts.component(phoneNumber, 5);
+            String localNumber = parts.component(phoneNumber, 6);
+            telephone = "+" + (countryCode != null ? countryCode : "") + " " + (areaCode != null ? areaCode : "") + " " + (localNumber != null ? localNumber : "");
+            email = parts.component(phoneNumber, 3);
+        } else if (!split(field(pidFields, 14), repetitionSeparator).isEmpty()) {
+            // business numbers are rare, they are left to the HAPI path
+            return null;
+        }
+
+        return new Hl7PatientData(hl7Ids, firstName, lastName, hl7Parser.convertDate(birthdayValue), address, sex, telephone, email);
+    }
+
+    /**
+     * check if a segment starts with a name of three upper case letters or digits
+     *
+     * @param segment           segment as String
+     * @param fieldSeparator    field separator
+     * @return true if the segment name is valid
+     */
+    private boolean hasValidSegmentName(String segment, char fieldSeparator) {
+        if (segment.length() < 3 || (segment.length() > 3 && segment.charAt(3) != fieldSeparator)) {
+            return false;
+        }
+        for (int i = 0; i < 3; i++) {
+            char c = segment.charAt(i);
+            if (!((c >= 'A' && c <= 'Z') || (i > 0 && c >= '0' && c <= '9'))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * get a field of a segment
+     *
+     * @param fields    fields of the segment, the segment name at index 0
+     * @param index     index of the field
+     * @return field or null if the field is empty or missing
+     */
+    private String field(List<String> fields, int index) {
+        return index < fields.size() ? fields.get(index) : null;
+    }
+
+    /**
+     * split a String like the HAPI pipe parser: consecutive separators produce null entries, but a trailing
+     * separator does not produce an entry
+     *
+     * @param value     value to split, may be null
+     * @param separator separator
+     * @return parts of the value, null for empty parts
+     */
+    static List<String> split(String value, char separator) {
+        List<String> parts = new ArrayList<>();
+        if (value == null) {
+            return parts;
+        }
+        boolean previousWasSeparator = true;
+        int start = 0;
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) == separator) {
+                if (previousWasSeparator) {
+                    parts.add(null);
+                } else {
+                    parts.add(value.substring(start, i));
+                }
+                previousWasSeparator = true;
+                start = i + 1;
+            } else {
+                previousWasSeparator = false;
+            }
+        }
+        if (!previousWasSeparator) {
+            parts.add(value.substring(start));
+        }
+        return parts;
+    }
+
+    /**
+     * access to repetitions, components and subcomponents with the message's encoding characters
+     */
+    private static class Parts {
+
+        private final char repetitionSeparator;
+
+        private final char componentSeparator;
+
+        private final char subcomponentSeparator;
+
+        private Parts(char repetitionSeparator, char componentSeparator, char subcomponentSeparator) {
+            this.repetitionSeparator = repetitionSeparator;
+            this.componentSeparator = componentSeparator;
+            this.subcomponentSeparator = subcomponentSeparator;
+        }
+
+        private String firstRepetition(String field) {
+            List<String> repetitions = split(field, repetitionSeparator);
+            return repetitions.isEmpty() ? null : repetitions.get(0);
+        }
+
+        /**
+         * get the value of a component; like HAPI only the first subcomponent is used for primitive values
+         */
+        private String component(String repetition, int index) {
+            List<String> components = split(repetition, componentSeparator);
+            if (index >= components.size()) {
+                return null;
+            }
+            List<String> subcomponents = split(components.get(index), subcomponentSeparator);
+            return subcomponents.isEmpty() ? null : subcomponents.get(0);
+        }
+    }
+}
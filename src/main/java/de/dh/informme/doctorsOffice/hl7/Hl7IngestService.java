@@ -0,0 +1,129 @@
+package de.dh.informme.doctorsOffice.hl7;
+
+import de.dh.informme.application.WorkerThreads;
+import de.dh.informme.doctorsOffice.patient.Patient;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * processes health cards on a bounded pool of worker threads, so the request threads do not wait for the database
+ * <p>
+ * Messages which find no free worker wait in a queue of limited size. When the queue is full, new messages are
+ * rejected at once instead of waiting longer and longer; messages which waited too long are not processed anymore.
+ */
+@Service
+public class Hl7IngestService {
+
+    @Autowired
+    private Hl7Service hl7Service;
+
+    @Autowired
+    private WorkerThreads workerThreads;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    /**
+     * number of worker threads processing the health cards
+     */
+    @Value("${informme.hl7.ingest.threads:8}")
+    private int threads;
+
+    /**
+     * number of health cards which may wait for a worker
+     */
+    @Value("${informme.hl7.ingest.queue-capacity:50}")
+    private int queueCapacity;
+
+    /**
+     * time in milliseconds after which a health card is answered as timed out, including the time in the queue
+     */
+    @Value("${informme.hl7.ingest.timeout:10000}")
+    private long timeout;
+
+    private ThreadPoolExecutor executor;
+
+    private Timer waitTimer;
+
+    private Counter rejectedMessages;
+
+    private Counter timedOutMessages;
+
+    @PostConstruct
+    public void startExecutor() {
+        executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), workerThreads.threadFactory("hl7-ingest-"), new ThreadPoolExecutor.AbortPolicy());
+        Gauge.builder("informme.hl7.ingest.queue-depth", this, Hl7IngestService::getQueueDepth)
+                .description("health cards waiting for a worker")
+                .register(meterRegistry);
+        waitTimer = Timer.builder("informme.hl7.ingest.wait")
+                .description("time a health card waited for a worker")
+                .register(meterRegistry);
+        rejectedMessages = meterRegistry.counter("informme.hl7.ingest.rejected");
+        timedOutMessages = meterRegistry.counter("informme.hl7.ingest.timed-out");
+    }
+
+    @PreDestroy
+    public void stopExecutor() {
+        executor.shutdown();
+    }
+
+    /**
+     * queue a health card for processing
+     *
+     * @param message   HL7 message
+     * @param autoMatch update the patient's data if there are dismatches
+     * @return the patient, completed with the exception of {@link Hl7Service#processMessage} or a
+     * {@link TimeoutException} if the message was not processed in time
+     * @throws RejectedExecutionException is thrown when the queue is full
+     */
+    public CompletableFuture<Patient> submit(String message, boolean autoMatch) {
+        CompletableFuture<Patient> result = new CompletableFuture<>();
+        long queuedAt = System.nanoTime();
+        try {
+            executor.execute(() -> {
+                waitTimer.record(System.nanoTime() - queuedAt, TimeUnit.NANOSECONDS);
+                if (result.isDone()) {
+                    // the request has timed out while the message was waiting
+                    return;
+                }
+                try {
+                    result.complete(hl7Service.processMessage(message, autoMatch));
+                } catch (Exception e) {
+                    result.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejectedMessages.increment();
+            throw e;
+        }
+        return result.orTimeout(timeout, TimeUnit.MILLISECONDS).whenComplete((patient, e) -> {
+            if (e instanceof TimeoutException) {
+                timedOutMessages.increment();
+            }
+        });
+    }
+
+    /**
+     * get the number of health cards waiting for a worker
+     *
+     * @return number of queued messages
+     */
+    public int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+}
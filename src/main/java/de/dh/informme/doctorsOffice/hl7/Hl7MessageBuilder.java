@@ -0,0 +1,132 @@
+package de.dh.informme.doctorsOffice.hl7;
+
+import ca.uhn.hl7v2.HL7Exception;
+import ca.uhn.hl7v2.HapiContext;
+import ca.uhn.hl7v2.model.v26.datatype.XAD;
+import ca.uhn.hl7v2.model.v26.datatype.XPN;
+import ca.uhn.hl7v2.model.v26.datatype.XTN;
+import ca.uhn.hl7v2.model.v26.message.ADT_A01;
+import ca.uhn.hl7v2.model.v26.segment.MSH;
+import ca.uhn.hl7v2.model.v26.segment.PID;
+import ca.uhn.hl7v2.parser.Parser;
+import de.dh.informme.doctorsOffice.patient.Patient;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * builds HL7 messages from the patients in the database; the reverse of {@link Hl7Parser}
+ */
+@Service
+public class Hl7MessageBuilder {
+
+    /**
+     * address as built by {@link Hl7Parser#getPatientAddressAsString}: "street, postal code city[, country]"
+     */
+    private static final Pattern ADDRESS = Pattern.compile("^(.+), (\\S+) (.+?)(?:, ([^,]+))?$");
+
+    @Autowired
+    private HapiContext hapiContext;
+
+    @Autowired
+    private Parser pipeParser;
+
+    /**
+     * build an ADT^A01 message with the data of a patient
+     *
+     * @param patient patient to build the message for
+     * @return encoded message, segments separated by carriage returns
+     * @throws HL7Exception is thrown when a value could not be set or the message could not be encoded
+     */
+    public String buildAdmission(Patient patient) throws HL7Exception {
+        ADT_A01 message = new ADT_A01(hapiContext.getModelClassFactory());
+        message.setParser(pipeParser);
+        String now = new SimpleDateFormat("yyyyMMddHHmmss").format(new Date());
+        MSH msh = message.getMSH();
+        msh.getFieldSeparator().setValue("|");
+        msh.getEncodingCharacters().setValue("^~\\&");
+        msh.getSendingApplication().getNamespaceID().setValue("InformMe");
+        msh.getSendingFacility().getNamespaceID().setValue("Praxis Digital Health");
+        msh.getDateTimeOfMessage().setValue(now);
+        msh.getMessageType().getMessageCode().setValue("ADT");
+        msh.getMessageType().getTriggerEvent().setValue("A01");
+        msh.getMessageType().getMessageStructure().setValue("ADT_A01");
+        msh.getMessageControlID().setValue("EXPORT" + patient.getPatientId());
+        msh.getProcessingID().getProcessingID().setValue("P");
+        msh.getVersionID().getVersionID().setValue("2.6");
+
+        message.getEVN().getEventTypeCode().setValue("A01");
+        message.getEVN().getRecordedDateTime().setValue(now);
+
+        PID pid = message.getPID();
+        pid.getSetIDPID().setValue("1");
+        pid.getPatientIdentifierList(0).getIDNumber().setValue(patient.getHl7Id());
+        pid.getPatientIdentifierList(0).getAssigningAuthority().getNamespaceID().setValue("Praxis Digital Health");
+        XPN name = pid.getPatientName(0);
+        name.getFamilyName().getSurname().setValue(patient.getLastName());
+        name.getGivenName().setValue(patient.getFirstName());
+        if (patient.getBirthday() != null) {
+            pid.getDateTimeOfBirth().setValue(new SimpleDateFormat("yyyyMMdd").format(patient.getBirthday()));
+        }
+        pid.getAdministrativeSex().setValue(patient.getSex());
+        setAddress(pid, patient.getAddress());
+        setTelephoneAndEmail(pid, patient.getTelephone(), patient.getEmail());
+
+        message.getPV1().getPatientClass().setValue("O");
+        return pipeParser.encode(message);
+    }
+
+    /**
+     * set the address, split into street, postal code, city and country if possible
+     *
+     * @param pid     PID segment
+     * @param address address as String
+     * @throws HL7Exception is thrown when a value could not be set
+     */
+    private void setAddress(PID pid, String address) throws HL7Exception {
+        if (address == null || address.isBlank() || "Invalid".equals(address)) {
+            return;
+        }
+        XAD xad = pid.getPatientAddress(0);
+        Matcher matcher = ADDRESS.matcher(address);
+        if (matcher.matches()) {
+            xad.getStreetAddress().getStreetOrMailingAddress().setValue(matcher.group(1));
+            xad.getZipOrPostalCode().setValue(matcher.group(2));
+            xad.getCity().setValue(matcher.group(3));
+            xad.getCountry().setValue(matcher.group(4));
+        } else {
+            xad.getStreetAddress().getStreetOrMailingAddress().setValue(address);
+        }
+    }
+
+    /**
+     * set the telephone number and the email address as first home phone number
+     *
+     * @param pid       PID segment
+     * @param telephone telephone number as "+country area number"
+     * @param email     email address
+     * @throws HL7Exception is thrown when a value could not be set
+     */
+    private void setTelephoneAndEmail(PID pid, String telephone, String email) throws HL7Exception {
+        if ((telephone == null || telephone.isBlank()) && (email == null || email.isBlank())) {
+            return;
+        }
+        XTN xtn = pid.getPhoneNumberHome(0);
+        xtn.getTelecommunicationUseCode().setValue("PRN");
+        xtn.getCommunicationAddress().setValue(email);
+        if (telephone != null && !telephone.isBlank()) {
+            String[] parts = telephone.trim().split(" ", 3);
+            if (parts.length == 3) {
+                xtn.getCountryCode().setValue(parts[0].startsWith("+") ? parts[0].substring(1) : parts[0]);
+                xtn.getAreaCityCode().setValue(parts[1]);
+                xtn.getLocalNumber().setValue(parts[2]);
+            } else {
+                xtn.getLocalNumber().setValue(telephone.trim());
+            }
+        }
+    }
+}
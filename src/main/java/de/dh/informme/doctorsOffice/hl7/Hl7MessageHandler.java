@@ -0,0 +1,25 @@
+package de.dh.informme.doctorsOffice.hl7;
+
+import java.util.Set;
+
+/**
+ * reads the patient data of the message types it is registered for, see {@link Hl7MessageRouter}
+ */
+public interface Hl7MessageHandler {
+
+    /**
+     * get the handled message types
+     *
+     * @return message types of MSH-9 as CODE^TRIGGER, like ADT^A01
+     */
+    Set<String> getMessageTypes();
+
+    /**
+     * extract the patient data of a message of one of the handled types
+     *
+     * @param hl7MessageAsString HL7 message
+     * @return patient data of the PID segment
+     * @throws Exception is thrown when the message could not be parsed or has the wrong structure
+     */
+    Hl7PatientData extractPatientData(String hl7MessageAsString) throws Exception;
+}
@@ -0,0 +1,149 @@
+package de.dh.informme.doctorsOffice.hl7;
+
+import ca.uhn.hl7v2.HL7Exception;
+import de.dh.informme.error.UnsupportedMessageTypeError;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * picks the {@link Hl7MessageHandler} of a message by its type in MSH-9
+ * <p>
+ * The type is read from the raw message, so messages of unsupported types are rejected before HAPI builds a model of
+ * them. Further types are supported by adding a handler bean. The messages are counted by type and result.
+ */
+@Service
+public class Hl7MessageRouter {
+
+    /**
+     * tag of messages whose type could not be read
+     */
+    private static final String UNREADABLE = "unreadable";
+
+    /**
+     * tag of unsupported types which are not in {@link #KNOWN_MESSAGE_TYPES}, so senders can not create arbitrary tags
+     */
+    private static final String OTHER = "other";
+
+    /**
+     * unsupported types which are rejected with a tag of their own
+     */
+    private static final List<String> KNOWN_MESSAGE_TYPES = List.of(
+            "ADT^A01", "ADT^A02", "ADT^A03", "ADT^A04", "ADT^A05", "ADT^A06", "ADT^A07", "ADT^A08", "ADT^A09",
+            "ADT^A10", "ADT^A11", "ADT^A12", "ADT^A13", "ADT^A17", "ADT^A28", "ADT^A29", "ADT^A31", "ADT^A34",
+            "ADT^A40", "ORM^O01", "ORU^R01", "ORU^R30");
+
+    @Autowired
+    private List<Hl7MessageHandler> handlers;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final Map<String, Hl7MessageHandler> handlersByType = new HashMap<>();
+
+    private final Map<String, Counter> acceptedMessages = new HashMap<>();
+
+    private final Map<String, Counter> rejectedMessages = new HashMap<>();
+
+    @PostConstruct
+    public void init() {
+        for (Hl7MessageHandler handler : handlers) {
+            for (String messageType : handler.getMessageTypes()) {
+                Hl7MessageHandler registered = handlersByType.putIfAbsent(messageType, handler);
+                if (registered != null) {
+                    throw new IllegalStateException("The message type " + messageType + " is handled by "
+                            + registered.getClass().getSimpleName() + " and " + handler.getClass().getSimpleName());
+                }
+                acceptedMessages.put(messageType, counter(messageType, "accepted"));
+            }
+        }
+        for (String messageType : KNOWN_MESSAGE_TYPES) {
+            if (!handlersByType.containsKey(messageType)) {
+                rejectedMessages.put(messageType, counter(messageType, "rejected"));
+            }
+        }
+        rejectedMessages.put(OTHER, counter(OTHER, "rejected"));
+        rejectedMessages.put(UNREADABLE, counter(UNREADABLE, "rejected"));
+    }
+
+    /**
+     * get the handler of a message
+     *
+     * @param hl7MessageAsString HL7 message
+     * @return handler of the message type
+     * @throws HL7Exception                is thrown when the message has no readable MSH segment
+     * @throws UnsupportedMessageTypeError is thrown when no handler supports the message type
+     */
+    public Hl7MessageHandler route(String hl7MessageAsString) throws HL7Exception, UnsupportedMessageTypeError {
+        String messageType = readMessageType(hl7MessageAsString);
+        if (messageType == null) {
+            rejectedMessages.get(UNREADABLE).increment();
+            throw new HL7Exception("The message does not start with a valid MSH segment.");
+        }
+        Hl7MessageHandler handler = handlersByType.get(messageType);
+        if (handler == null) {
+            rejectedMessages.getOrDefault(messageType, rejectedMessages.get(OTHER)).increment();
+            throw new UnsupportedMessageTypeError(messageType);
+        }
+        acceptedMessages.get(messageType).increment();
+        return handler;
+    }
+
+    /**
+     * get the handled message types
+     *
+     * @return message types as CODE^TRIGGER
+     */
+    public List<String> getMessageTypes() {
+        return handlersByType.keySet().stream().sorted().toList();
+    }
+
+    private Counter counter(String messageType, String result) {
+        return Counter.builder("informme.hl7.messages")
+                .description("received HL7 messages by type and result of the routing")
+                .tag("type", messageType)
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    /**
+     * read the message code and trigger event of MSH-9 without parsing the message
+     *
+     * @param hl7MessageAsString HL7 message
+     * @return message type as CODE^TRIGGER, only the code if MSH-9 has no trigger event, or null if the message does
+     * not start with an MSH segment with a message code
+     */
+    static String readMessageType(String hl7MessageAsString) {
+        if (hl7MessageAsString.length() < 8 || !hl7MessageAsString.startsWith("MSH")) {
+            return null;
+        }
+        char fieldSeparator = hl7MessageAsString.charAt(3);
+        char componentSeparator = hl7MessageAsString.charAt(4);
+        int segmentEnd = hl7MessageAsString.indexOf('\r');
+        int lineEnd = hl7MessageAsString.indexOf('\n');
+        if (segmentEnd < 0 || (lineEnd >= 0 && lineEnd < segmentEnd)) {
+            segmentEnd = lineEnd >= 0 ? lineEnd : hl7MessageAsString.length();
+        }
+        String msh = hl7MessageAsString.substring(0, segmentEnd);
+        // MSH-1 is the field separator itself, so the separator at index 3 starts MSH-2
+        int start = 3;
+        for (int field = 3; field <= 9; field++) {
+            start = msh.indexOf(fieldSeparator, start + 1);
+            if (start < 0) {
+                return null;
+            }
+        }
+        int end = msh.indexOf(fieldSeparator, start + 1);
+        List<String> components = Hl7FastPidExtractor.split(msh.substring(start + 1, end < 0 ? msh.length() : end), componentSeparator);
+        if (components.isEmpty() || components.get(0) == null) {
+            return null;
+        }
+        return components.size() > 1 && components.get(1) != null ? components.get(0) + "^" + components.get(1) : components.get(0);
+    }
+}
@@ -1,6 +1,7 @@
 package de.dh.informme.doctorsOffice.hl7;
 
 import ca.uhn.hl7v2.model.Type;
+import ca.uhn.hl7v2.model.v26.datatype.CX;
 import ca.uhn.hl7v2.model.v26.datatype.SAD;
 import ca.uhn.hl7v2.model.v26.datatype.XAD;
 import ca.uhn.hl7v2.model.v26.datatype.XTN;
@@ -9,11 +10,29 @@ import org.springframework.stereotype.Service;
 
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
 
 @Service
 public class Hl7Parser {
 
+    /**
+     * get all patient data which is needed to find or create a patient
+     *
+     * @param pid PID segment of the HL7 message
+     * @return patient data
+     * @throws ParseException is thrown when the birthday could not be parsed
+     */
+    public Hl7PatientData getPatientData(PID pid) throws ParseException {
+        List<String> hl7Ids = new ArrayList<>();
+        for (CX cxId : pid.getPatientIdentifierList()) {
+            hl7Ids.add(cxId.getIDNumber().getValue());
+        }
+        return new Hl7PatientData(hl7Ids, getPatientFirstName(pid), getPatientLastName(pid), getPatientBirthday(pid),
+                getPatientAddressAsString(pid), getPatientAdministrativeSex(pid), getPatientTelephoneNumber(pid), getPatientEmail(pid));
+    }
+
     /**
      * get the patient's first name
      *
@@ -125,7 +144,7 @@ public class Hl7Parser {
      * @return date as Date
      * @throws ParseException is thrown when there was an exception while parsing the message
      */
-    private Date convertDate(String date) throws ParseException {
+    Date convertDate(String date) throws ParseException {
         SimpleDateFormat formatter = new SimpleDateFormat("yyyyMMdd");
         return formatter.parse(date);
     }
@@ -0,0 +1,45 @@
+package de.dh.informme.doctorsOffice.hl7;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * patient data extracted from the PID segment of an HL7 message
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class Hl7PatientData {
+
+    /**
+     * ID numbers of the patient identifier list (PID-3)
+     */
+    private List<String> hl7Ids;
+
+    private String firstName;
+
+    private String lastName;
+
+    private Date birthday;
+
+    /**
+     * address as String, see {@link Hl7Parser#getPatientAddressAsString}
+     */
+    private String address;
+
+    /**
+     * administrative sex
+     */
+    private String sex;
+
+    /**
+     * telephone number as String, see {@link Hl7Parser#getPatientTelephoneNumber}
+     */
+    private String telephone;
+
+    private String email;
+}
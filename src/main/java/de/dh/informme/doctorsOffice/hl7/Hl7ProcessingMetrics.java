@@ -0,0 +1,144 @@
+package de.dh.informme.doctorsOffice.hl7;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * timers for the stages and counters for the outcomes of processing a health card message
+ * <p>
+ * All meters are registered once on startup, so recording only costs a clock read and an update of the meter.
+ * Percentile histograms are configured in the application.properties.
+ */
+@Component
+public class Hl7ProcessingMetrics {
+
+    /**
+     * stages of processing a message
+     */
+    public enum Stage {
+        /**
+         * parsing the message and reading the PID segment
+         */
+        PARSE("parse"),
+        /**
+         * waiting for other messages of the same patient, see {@link PatientIdentityLocks}
+         */
+        LOCK_WAIT("lock-wait"),
+        /**
+         * looking up the patient by HL7 id, name and birthday
+         */
+        LOOKUP("lookup"),
+        /**
+         * deciding if an unknown patient is a duplicate
+         */
+        DUPLICATE_CHECK("duplicate-check"),
+        /**
+         * rewriting the HL7 mock of the message
+         */
+        MOCK_UPDATE("mock-update"),
+        /**
+         * saving the patient of the message in the database
+         */
+        SAVE("save");
+
+        private final String tag;
+
+        Stage(String tag) {
+            this.tag = tag;
+        }
+    }
+
+    /**
+     * outcomes of processing a message
+     */
+    public enum Outcome {
+        /**
+         * the patient was unknown and has been saved
+         */
+        NEW("new"),
+        /**
+         * the patient was found by HL7 id without dismatches
+         */
+        MATCHED("matched"),
+        /**
+         * the patient was found by HL7 id and updated with the data of the message
+         */
+        AUTO_UPDATED("auto-updated"),
+        /**
+         * the patient was found by name and birthday and updated with the data of the message
+         */
+        UPDATED("updated"),
+        /**
+         * there is more than one patient with the name and birthday
+         */
+        DUPLICATE("duplicate"),
+        /**
+         * the patient was found by HL7 id, but the data does not match
+         */
+        DISMATCH("dismatch");
+
+        private final String tag;
+
+        Outcome(String tag) {
+            this.tag = tag;
+        }
+    }
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final Map<Stage, Timer> timers = new EnumMap<>(Stage.class);
+
+    private final Map<Outcome, Counter> counters = new EnumMap<>(Outcome.class);
+
+    @PostConstruct
+    public void init() {
+        for (Stage stage : Stage.values()) {
+            timers.put(stage, Timer.builder("informme.hl7.stage")
+                    .description("time spent in one stage of processing a health card message")
+                    .tag("stage", stage.tag)
+                    .register(meterRegistry));
+        }
+        for (Outcome outcome : Outcome.values()) {
+            counters.put(outcome, Counter.builder("informme.hl7.outcomes")
+                    .description("processed health card messages by outcome")
+                    .tag("outcome", outcome.tag)
+                    .register(meterRegistry));
+        }
+    }
+
+    /**
+     * start timing a stage
+     *
+     * @return sample to pass to {@link #stop}
+     */
+    public Timer.Sample start() {
+        return Timer.start(meterRegistry);
+    }
+
+    /**
+     * stop timing a stage
+     *
+     * @param sample sample returned by {@link #start}
+     * @param stage  timed stage
+     */
+    public void stop(Timer.Sample sample, Stage stage) {
+        sample.stop(timers.get(stage));
+    }
+
+    /**
+     * count the outcome of a processed message
+     *
+     * @param outcome outcome of the message
+     */
+    public void record(Outcome outcome) {
+        counters.get(outcome).increment();
+    }
+}
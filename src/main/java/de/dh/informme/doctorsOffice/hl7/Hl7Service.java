@@ -1,25 +1,29 @@
 package de.dh.informme.doctorsOffice.hl7;
 
-import ca.uhn.hl7v2.DefaultHapiContext;
 import ca.uhn.hl7v2.HL7Exception;
-import ca.uhn.hl7v2.HapiContext;
-import ca.uhn.hl7v2.model.Message;
-import ca.uhn.hl7v2.model.v26.datatype.CX;
-import ca.uhn.hl7v2.model.v26.segment.PID;
-import ca.uhn.hl7v2.parser.Parser;
-import ca.uhn.hl7v2.model.v26.message.ADT_A01;
+import de.dh.informme.doctorsOffice.hl7.Hl7ProcessingMetrics.Outcome;
+import de.dh.informme.doctorsOffice.hl7.Hl7ProcessingMetrics.Stage;
 import de.dh.informme.error.DismatchError;
 import de.dh.informme.error.DuplicatePatientError;
+import de.dh.informme.error.UnsupportedMessageTypeError;
+import de.dh.informme.doctorsOffice.patient.Hl7IdAllocator;
 import de.dh.informme.doctorsOffice.patient.Patient;
+import de.dh.informme.doctorsOffice.patient.PatientCardIdentity;
+import de.dh.informme.doctorsOffice.patient.PatientFingerprint;
+import de.dh.informme.doctorsOffice.patient.PatientResolution;
 import de.dh.informme.doctorsOffice.patient.PatientService;
+import io.micrometer.core.instrument.Timer;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 
 import java.text.DateFormat;
-import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
+import java.util.function.UnaryOperator;
 
 @Service
 public class Hl7Service {
@@ -28,111 +32,207 @@ public class Hl7Service {
     private PatientService patientService;
 
     @Autowired
-    private Hl7Parser hl7Parser;
+    private Hl7IdAllocator hl7IdAllocator;
+
+    @Autowired
+    private Hl7MessageRouter hl7MessageRouter;
+
+    @Autowired
+    private Hl7ProcessingMetrics hl7ProcessingMetrics;
+
+    @Autowired
+    private PatientIdentityLocks patientIdentityLocks;
 
     /**
      * process a given HL7 message
      *
      * @param hl7MessageAsString hl7 message
-     * @throws HL7Exception is thrown when there was an exception while parsing the message
+     * @throws HL7Exception                is thrown when there was an exception while parsing the message
+     * @throws UnsupportedMessageTypeError is thrown before parsing when the message type of MSH-9 is not supported
      */
     public Patient processMessage(String hl7MessageAsString, boolean autoMatch) throws Exception {
-        HapiContext context = new DefaultHapiContext();
-        Parser parser = context.getPipeParser();
-        Message message = parser.parse(hl7MessageAsString);
-
-        Patient patient = new Patient();
-        boolean patientFound = false;
-
-        if (message instanceof ADT_A01 adtMessage) {
-            PID pid = adtMessage.getPID();
-
-            // get the patientIdentifierList and check if the patient is already registered in the database
-            CX[] patientIdList = pid.getPatientIdentifierList();
-            for (CX cxId : patientIdList) {
-                String id = cxId.getIDNumber().getValue();
-                if (patientService.getPatientByHl7Id(id) != null) {
-                    patient = patientService.getPatientByHl7Id(id);
-                    patientFound = true;
-                }
+        return processMessage(hl7MessageAsString, autoMatch, false);
+    }
+
+    /**
+     * process a given HL7 message
+     *
+     * @param hl7MessageAsString hl7 message
+     * @param autoMatch          update a known patient with the data of the message
+     * @param createSimilar      save a new patient even if there are patients with a similar name and the same
+     *                           birthday, e.g. the second of two twins
+     * @throws HL7Exception                is thrown when there was an exception while parsing the message
+     * @throws UnsupportedMessageTypeError is thrown before parsing when the message type of MSH-9 is not supported
+     */
+    public Patient processMessage(String hl7MessageAsString, boolean autoMatch, boolean createSimilar) throws Exception {
+        Hl7MessageHandler handler = hl7MessageRouter.route(hl7MessageAsString);
+        Timer.Sample parse = hl7ProcessingMetrics.start();
+        Hl7PatientData patientData = handler.extractPatientData(hl7MessageAsString);
+        Patient patientFromMessage = updatePatientWithMessageContent(new Patient(), patientData);
+        hl7ProcessingMetrics.stop(parse, Stage.PARSE);
+
+        List<String> identities = getIdentities(patientData);
+        Timer.Sample lockWait = hl7ProcessingMetrics.start();
+        try {
+            return patientIdentityLocks.runLocked(identities, () -> {
+                hl7ProcessingMetrics.stop(lockWait, Stage.LOCK_WAIT);
+                return resolvePatient(hl7MessageAsString, autoMatch, createSimilar, patientData, patientFromMessage);
+            });
+        } catch (DataIntegrityViolationException e) {
+            // another instance saved the patient of the card in the meantime, its card identity is unique; the second
+            // try finds it by name and birthday
+            return patientIdentityLocks.runLocked(identities,
+                    () -> resolvePatient(hl7MessageAsString, autoMatch, createSimilar, patientData, updatePatientWithMessageContent(new Patient(), patientData)));
+        }
+    }
+
+    /**
+     * find the patient of a message and save or update it; called while the identities of the patient are locked
+     *
+     * @param hl7MessageAsString hl7 message
+     * @param autoMatch          update a known patient with the data of the message
+     * @param createSimilar      save a new patient even if there are patients with a similar name
+     * @param patientData        patient data of the message
+     * @param patientFromMessage new patient with the data of the message
+     * @return found or saved patient
+     * @throws Exception is thrown when the patient is a duplicate or does not match the message
+     */
+    private Patient resolvePatient(String hl7MessageAsString, boolean autoMatch, boolean createSimilar, Hl7PatientData patientData, Patient patientFromMessage) throws Exception {
+        // look up the patientIdentifierList and the name and birthday with one query
+        Timer.Sample lookup = hl7ProcessingMetrics.start();
+        PatientResolution resolution = patientService.resolvePatient(patientData.getHl7Ids(), patientFromMessage.getFirstName(), patientFromMessage.getLastName(), patientFromMessage.getBirthday());
+        hl7ProcessingMetrics.stop(lookup, Stage.LOOKUP);
+
+        Patient patient = resolution.getPatientByHl7Id();
+        if (patient != null) {
+            // an unchanged health card is neither compared field by field nor written
+            long fingerprint = PatientFingerprint.of(patientFromMessage);
+            if (patient.getDemographicsFingerprint() != null && patient.getDemographicsFingerprint() == fingerprint) {
+                hl7ProcessingMetrics.record(Outcome.MATCHED);
+                return patient;
             }
-            if (patientFound) {
-                HashMap<String, String> dismatches = checkForDismatches(patient, pid);
-                if (!dismatches.isEmpty()) {
-                    if (autoMatch) {
-                        Patient updatedPatient = updatePatientWithMessageContent(patient, pid);
-                        return patientService.updatePatient(updatedPatient, hl7MessageAsString);
-                    } else {
-                        throw new DismatchError("There are dismatches between the patient's data in the database and the data in the HL7 message.");
-                    }
+            HashMap<String, String> dismatches = checkForDismatches(patient, patientData);
+            if (!dismatches.isEmpty()) {
+                if (autoMatch) {
+                    Patient updatedPatient = updatePatientWithMessageContent(patient, patientData);
+                    return save(patientService::updatePatient, updatedPatient, hl7MessageAsString, Outcome.AUTO_UPDATED);
+                } else {
+                    hl7ProcessingMetrics.record(Outcome.DISMATCH);
+                    throw new DismatchError("There are dismatches between the patient's data in the database and the data in the HL7 message.");
                 }
-                return patient;
+            }
+            patientService.storeDemographicsFingerprint(patient, fingerprint);
+            hl7ProcessingMetrics.record(Outcome.MATCHED);
+            return patient;
 
+        } else {
+            patient = patientFromMessage;
+            setRandomId(patient);
+            // the exact candidates were loaded by the lookup, similar names are only searched if there is none and
+            // the similar patients were not already confirmed to be other persons
+            Timer.Sample duplicateCheck = hl7ProcessingMetrics.start();
+            List<Patient> duplicates = resolution.getPatientsByNameAndBirthday();
+            List<Patient> similarPatients = duplicates.isEmpty() && !createSimilar
+                    ? patientService.getSimilarPatients(patient.getFirstName(), patient.getLastName(), patient.getBirthday())
+                    : List.of();
+            hl7ProcessingMetrics.stop(duplicateCheck, Stage.DUPLICATE_CHECK);
+            if (duplicates.size() > 1) {
+                hl7ProcessingMetrics.record(Outcome.DUPLICATE);
+                throw new DuplicatePatientError("There are more than one instances of the patient with the given name and birthday.");
+            } else if (!similarPatients.isEmpty()) {
+                // a similar name may be a typo or a different spelling, so the patient is neither matched nor created
+                // until the reception reads the card again with createSimilar
+                hl7ProcessingMetrics.record(Outcome.DUPLICATE);
+                throw new DuplicatePatientError("There are patients with a similar name and the same birthday.");
+            } else if (duplicates.size() == 1) {
+                patient.setPatientId(duplicates.get(0).getPatientId());
+                patient.setVersion(duplicates.get(0).getVersion());
+                patient.setCardIdentity(duplicates.get(0).getCardIdentity());
+                return save(patientService::updatePatient, patient, hl7MessageAsString, Outcome.UPDATED);
             } else {
-                patient = updatePatientWithMessageContent(patient, pid);
-                String firstName = patient.getFirstName();
-                String lastName = patient.getLastName();
-                Date birthday = patient.getBirthday();
-                setRandomId(patient, pid);
-                patientFound = patientService.checkForDuplicates(patient);
-                if (patientFound) {
-                    if (patientService.getPatientByNameAndBirthday(firstName, lastName, birthday).size() > 1) {
-                        throw new DuplicatePatientError("There are more than one instances of the patient with the given name and birthday.");
-                    } else {
-                        Patient foundPatient = patientService.getPatientByNameAndBirthday(firstName, lastName, birthday).get(0);
-                        patient.setPatientId(foundPatient.getPatientId());
-                        patientService.updatePatient(patient, hl7MessageAsString);
-                        return patientService.getPatientByNameAndBirthday(firstName, lastName, birthday).get(0);
-                    }
-                } else {
-                    patientService.updatePatient(patient, hl7MessageAsString);
-                    return patientService.savePatient(patient, hl7MessageAsString);
-                }
+                // a new patient gets its patientId from the database
+                patient.setPatientId(null);
+                patient.setCardIdentity(PatientCardIdentity.of(patient));
+                return save(patientService::savePatient, patient, hl7MessageAsString, Outcome.NEW);
             }
+        }
+    }
+
+    /**
+     * update the HL7 mock of a message and save its patient; only the database call is timed as {@link Stage#SAVE},
+     * the service methods are shared with the REST API and the import, so they are not timed themselves
+     *
+     * @param save               service method saving the patient
+     * @param patient            patient to save
+     * @param hl7MessageAsString hl7 message of the patient
+     * @param outcome            outcome which is recorded once the patient is saved
+     * @return saved patient or null if the message could not be parsed for its HL7 mock
+     */
+    private Patient save(UnaryOperator<Patient> save, Patient patient, String hl7MessageAsString, Outcome outcome) {
+        if (!patientService.updateHl7Mock(hl7MessageAsString, patient)) {
+            return null;
+        }
+        Timer.Sample sample = hl7ProcessingMetrics.start();
+        Patient savedPatient;
+        try {
+            savedPatient = save.apply(patient);
+        } finally {
+            hl7ProcessingMetrics.stop(sample, Stage.SAVE);
+        }
+        // a failed save is retried or reported, so only saved patients are counted
+        hl7ProcessingMetrics.record(outcome);
+        return savedPatient;
+    }
+
+    /**
+     * get the identity keys of a patient for {@link PatientIdentityLocks}: the HL7 ids of the card and the birthday
+     * <p>
+     * The birthday is used instead of the name, so cards with similar names, which may be duplicates of each other,
+     * are processed one after the other as well.
+     *
+     * @param patientData patient data of the message
+     * @return identity keys
+     */
+    private List<String> getIdentities(Hl7PatientData patientData) {
+        List<String> identities = new ArrayList<>();
+        for (String hl7Id : patientData.getHl7Ids()) {
+            identities.add("hl7Id:" + hl7Id);
+        }
+        if (patientData.getBirthday() != null) {
+            identities.add("birthday:" + patientData.getBirthday().getTime());
         } else {
-            throw new Exception("Message has wrong format.");
+            identities.add("name:" + patientData.getLastName() + "^" + patientData.getFirstName());
         }
+        return identities;
     }
 
     /**
-     * set a random id for the PID-patient identifier list for the given patient
+     * set a new unique HL7 id for the given patient
      *
      * @param patient given patient
-     * @param pid PID segment of the hl7 message
-     * @throws HL7Exception is thrown when there was an exception while parsing the message
      */
-    public void setRandomId(Patient patient, PID pid) throws HL7Exception {
-        CX newIdentifierForList = pid.insertPatientIdentifierList(pid.getPatientIdentifierListReps());
-        String randomId = patientService.getRandomNumberString();
-        while (patientService.getPatientByHl7Id(randomId) != null) {
-            randomId = patientService.getRandomNumberString();
-        }
-        // set the new entry for patientIdentifierList
-        newIdentifierForList.getIDNumber().setValue(randomId);
-        newIdentifierForList.getAssigningAuthority().getNamespaceID().setValue("Digital Health Praxis");
-        // also save the new id in own patient object
-        patient.setHl7Id(newIdentifierForList.getIDNumber().getValue());
+    public void setRandomId(Patient patient) {
+        patient.setHl7Id(hl7IdAllocator.nextId());
     }
 
     /**
      * check for dismatches between the patient's data in the database and the data in the HL7 message
      *
      * @param patient   patient from the database
-     * @param pid       pid segment of the HL7 message
+     * @param patientData patient data of the HL7 message
      * @return hashmap with the dismatches
-     * @throws ParseException is thrown when there was an exception while parsing the message
      */
-    private HashMap<String, String> checkForDismatches(Patient patient, PID pid) throws ParseException {
+    private HashMap<String, String> checkForDismatches(Patient patient, Hl7PatientData patientData) {
         HashMap<String, String> dismatches = new HashMap<>();
-        String firstName = hl7Parser.getPatientFirstName(pid);
-        String lastName = hl7Parser.getPatientLastName(pid);
-        Date birthday = hl7Parser.getPatientBirthday(pid);
+        String firstName = patientData.getFirstName();
+        String lastName = patientData.getLastName();
+        Date birthday = patientData.getBirthday();
         DateFormat formatter = new SimpleDateFormat("dd.MM.yyyy");
         String birthdayString = formatter.format(birthday);
-        String address = hl7Parser.getPatientAddressAsString(pid);
-        String administrativeSex = hl7Parser.getPatientAdministrativeSex(pid);
-        String telephone = hl7Parser.getPatientTelephoneNumber(pid);
-        String mail = hl7Parser.getPatientEmail(pid);
+        String address = patientData.getAddress();
+        String administrativeSex = patientData.getSex();
+        String telephone = patientData.getTelephone();
+        String mail = patientData.getEmail();
 
         if (!patient.getFirstName().equals(firstName)) {
             dismatches.put("firstName", "firstName");
@@ -164,19 +264,17 @@ public class Hl7Service {
      * update the given patient with the content of the HL7 message
      *
      * @param patient   given patient
-     * @param pid       pid segment of the HL7 message
+     * @param patientData patient data of the HL7 message
      * @return updated patient
-     * @throws ParseException
      */
-    private Patient updatePatientWithMessageContent(Patient patient, PID pid) throws ParseException {
-        // extract information out of PID segment
-        String firstName = hl7Parser.getPatientFirstName(pid);
-        String lastName = hl7Parser.getPatientLastName(pid);
-        Date birthday = hl7Parser.getPatientBirthday(pid);
-        String address = hl7Parser.getPatientAddressAsString(pid);
-        String administrativeSex = hl7Parser.getPatientAdministrativeSex(pid);
-        String telephone = hl7Parser.getPatientTelephoneNumber(pid);
-        String mail = hl7Parser.getPatientEmail(pid);
+    private Patient updatePatientWithMessageContent(Patient patient, Hl7PatientData patientData) {
+        String firstName = patientData.getFirstName();
+        String lastName = patientData.getLastName();
+        Date birthday = patientData.getBirthday();
+        String address = patientData.getAddress();
+        String administrativeSex = patientData.getSex();
+        String telephone = patientData.getTelephone();
+        String mail = patientData.getEmail();
 
         // create a new patient object with the card's information
         patient.setFirstName(firstName);
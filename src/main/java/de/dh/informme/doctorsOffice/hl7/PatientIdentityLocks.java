@@ -0,0 +1,75 @@
+package de.dh.informme.doctorsOffice.hl7;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.concurrent.Callable;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * striped locks for the identities of patients
+ * <p>
+ * Health cards of the same patient are processed one after the other, so two terminals reading the same card can not
+ * both miss the patient and save it twice. Cards of other patients only wait if their identity falls into the same
+ * stripe. The locks only cover this instance; against other instances, the unique card identity of the patients
+ * makes the second insert of a new patient fail, see {@link de.dh.informme.doctorsOffice.patient.PatientCardIdentity}.
+ */
+@Component
+public class PatientIdentityLocks {
+
+    /**
+     * number of locks; more stripes mean fewer unrelated cards waiting for each other
+     */
+    @Value("${informme.hl7.identity-lock.stripes:1024}")
+    private int stripes;
+
+    private ReentrantLock[] locks;
+
+    @PostConstruct
+    public void init() {
+        locks = new ReentrantLock[stripes];
+        for (int i = 0; i < stripes; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * run a task while holding the locks of all given identities
+     * <p>
+     * The stripes are always locked in ascending order, so tasks with overlapping identities can not deadlock.
+     *
+     * @param identities identity keys of the patient, e.g. the HL7 ids and the birthday
+     * @param task       task to run
+     * @param <T>        result of the task
+     * @return result of the task
+     * @throws Exception is thrown when the task throws an exception
+     */
+    public <T> T runLocked(Collection<String> identities, Callable<T> task) throws Exception {
+        int[] stripeIndexes = identities.stream().mapToInt(this::stripe).distinct().sorted().toArray();
+        int locked = 0;
+        try {
+            for (int stripeIndex : stripeIndexes) {
+                locks[stripeIndex].lock();
+                locked++;
+            }
+            return task.call();
+        } finally {
+            for (int i = locked - 1; i >= 0; i--) {
+                locks[stripeIndexes[i]].unlock();
+            }
+        }
+    }
+
+    /**
+     * get the stripe of an identity
+     *
+     * @param identity identity key
+     * @return index of the lock
+     */
+    private int stripe(String identity) {
+        int hash = identity.hashCode();
+        return Math.floorMod(hash ^ (hash >>> 16), stripes);
+    }
+}
@@ -0,0 +1,150 @@
+package de.dh.informme.doctorsOffice.mllp;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * state of one MLLP connection; only used by the selector thread of the {@link MllpServer}
+ */
+class MllpConnection {
+
+    /**
+     * start of an MLLP frame
+     */
+    static final byte START_BLOCK = 0x0B;
+
+    /**
+     * end of an MLLP frame, followed by {@link #CARRIAGE_RETURN}
+     */
+    static final byte END_BLOCK = 0x1C;
+
+    static final byte CARRIAGE_RETURN = 0x0D;
+
+    private final SocketChannel channel;
+
+    private final SelectionKey key;
+
+    /**
+     * bytes which were read but do not form a complete frame yet
+     */
+    private byte[] input = new byte[4096];
+
+    private int inputLength = 0;
+
+    /**
+     * responses of the dispatched frames in the order in which the frames were received
+     */
+    private final Deque<CompletableFuture<byte[]>> pendingResponses = new ArrayDeque<>();
+
+    /**
+     * framed responses which are ready to be written
+     */
+    private final Deque<ByteBuffer> output = new ArrayDeque<>();
+
+    MllpConnection(SocketChannel channel, SelectionKey key) {
+        this.channel = channel;
+        this.key = key;
+    }
+
+    SocketChannel getChannel() {
+        return channel;
+    }
+
+    SelectionKey getKey() {
+        return key;
+    }
+
+    /**
+     * append bytes read from the channel
+     *
+     * @param buffer buffer in read mode
+     */
+    void appendInput(ByteBuffer buffer) {
+        int length = buffer.remaining();
+        if (inputLength + length > input.length) {
+            input = Arrays.copyOf(input, Math.max(input.length * 2, inputLength + length));
+        }
+        buffer.get(input, inputLength, length);
+        inputLength += length;
+    }
+
+    /**
+     * get the number of buffered bytes which do not form a complete frame yet
+     *
+     * @return number of buffered bytes
+     */
+    int getBufferedInputLength() {
+        return inputLength;
+    }
+
+    /**
+     * remove the next complete frame from the input
+     *
+     * @return content of the frame without the MLLP envelope or null if there is no complete frame
+     */
+    byte[] nextFrame() {
+        int start = -1;
+        for (int i = 0; i < inputLength; i++) {
+            if (input[i] == START_BLOCK) {
+                start = i;
+                break;
+            }
+        }
+        if (start < 0) {
+            // everything outside of a frame is ignored
+            inputLength = 0;
+            return null;
+        }
+        for (int i = start + 1; i < inputLength - 1; i++) {
+            if (input[i] == END_BLOCK && input[i + 1] == CARRIAGE_RETURN) {
+                byte[] frame = Arrays.copyOfRange(input, start + 1, i);
+                int consumed = i + 2;
+                System.arraycopy(input, consumed, input, 0, inputLength - consumed);
+                inputLength -= consumed;
+                return frame;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * get the number of frames which were dispatched but not answered yet
+     *
+     * @return number of frames in flight
+     */
+    int getInFlight() {
+        return pendingResponses.size();
+    }
+
+    void addPendingResponse(CompletableFuture<byte[]> response) {
+        pendingResponses.addLast(response);
+    }
+
+    /**
+     * move all completed responses to the output, keeping the order of the frames
+     *
+     * @return false if a response failed, then the connection can not be answered in order any more
+     */
+    boolean collectCompletedResponses() {
+        while (!pendingResponses.isEmpty() && pendingResponses.peekFirst().isDone()) {
+            if (pendingResponses.peekFirst().isCompletedExceptionally()) {
+                return false;
+            }
+            byte[] response = pendingResponses.removeFirst().join();
+            ByteBuffer frame = ByteBuffer.allocate(response.length + 3);
+            frame.put(START_BLOCK).put(response).put(END_BLOCK).put(CARRIAGE_RETURN).flip();
+            output.addLast(frame);
+        }
+        return true;
+    }
+
+    Deque<ByteBuffer> getOutput() {
+        return output;
+    }
+}
@@ -0,0 +1,363 @@
+package de.dh.informme.doctorsOffice.mllp;
+
+import ca.uhn.hl7v2.AcknowledgmentCode;
+import ca.uhn.hl7v2.HL7Exception;
+import de.dh.informme.application.WorkerThreads;
+import de.dh.informme.doctorsOffice.hl7.Hl7AckService;
+import de.dh.informme.doctorsOffice.hl7.Hl7Service;
+import de.dh.informme.error.UnsupportedMessageTypeError;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+import java.util.HashSet;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * MLLP listener which feeds HL7 messages received over TCP into the {@link Hl7Service}
+ * <p>
+ * All connections are served by one selector thread with non-blocking I/O; the messages are processed on a
+ * worker pool and answered with an ACK in the order in which they were received.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "informme.mllp.enabled", havingValue = "true")
+public class MllpServer implements SmartLifecycle {
+
+    @Autowired
+    private Hl7Service hl7Service;
+
+    @Autowired
+    private Hl7AckService hl7AckService;
+
+    @Autowired
+    private WorkerThreads executionThreads;
+
+    /**
+     * port of the listener, 0 picks a free port
+     */
+    @Value("${informme.mllp.port:2575}")
+    private int port;
+
+    /**
+     * maximum number of open connections, further connections are closed immediately
+     */
+    @Value("${informme.mllp.max-connections:100}")
+    private int maxConnections;
+
+    /**
+     * maximum number of messages of one connection which are processed before their ACK was sent
+     */
+    @Value("${informme.mllp.max-pipelined-messages:8}")
+    private int maxPipelinedMessages;
+
+    /**
+     * number of threads processing the messages
+     */
+    @Value("${informme.mllp.worker-threads:8}")
+    private int workerThreads;
+
+    /**
+     * maximum size of one frame in bytes
+     */
+    @Value("${informme.mllp.max-frame-size:1048576}")
+    private int maxFrameSize;
+
+    @Value("${informme.mllp.charset:UTF-8}")
+    private Charset charset;
+
+    /**
+     * update the patient's data if there are dismatches, like "autoUpdate" of POST /patient/read
+     */
+    @Value("${informme.mllp.auto-update:true}")
+    private boolean autoMatch;
+
+    /**
+     * answer messages of unsupported types with AA instead of AR, for senders which resend rejected messages
+     */
+    @Value("${informme.mllp.acknowledge-unsupported:false}")
+    private boolean acknowledgeUnsupported;
+
+    private final Set<MllpConnection> connections = new HashSet<>();
+
+    /**
+     * connections with completed responses, filled by the worker threads
+     */
+    private final Queue<MllpConnection> completedConnections = new ConcurrentLinkedQueue<>();
+
+    private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(16 * 1024);
+
+    private ExecutorService workers;
+
+    private Selector selector;
+
+    private ServerSocketChannel serverChannel;
+
+    private Thread selectorThread;
+
+    private volatile boolean running = false;
+
+    @Override
+    public void start() {
+        try {
+            selector = Selector.open();
+            serverChannel = ServerSocketChannel.open();
+            serverChannel.bind(new InetSocketAddress(port));
+            serverChannel.configureBlocking(false);
+            serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not start the MLLP listener on port " + port, e);
+        }
+        workers = executionThreads.newExecutor("mllp-worker-", workerThreads);
+        running = true;
+        selectorThread = new Thread(this::runSelectorLoop, "mllp-selector");
+        selectorThread.start();
+        log.info("MLLP listener started on port {}", getLocalPort());
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        selector.wakeup();
+        try {
+            selectorThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        workers.shutdown();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * get the port the listener is bound to
+     *
+     * @return local port
+     */
+    public int getLocalPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    /**
+     * accept, read and write until the server is stopped
+     */
+    private void runSelectorLoop() {
+        while (running) {
+            try {
+                selector.select();
+                MllpConnection completedConnection;
+                while ((completedConnection = completedConnections.poll()) != null) {
+                    onResponsesCompleted(completedConnection);
+                }
+                for (SelectionKey key : selector.selectedKeys()) {
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                    } else {
+                        MllpConnection connection = (MllpConnection) key.attachment();
+                        if (key.isReadable()) {
+                            read(connection);
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            write(connection);
+                        }
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                // an error must not stop the listener for all other connections
+                log.error("Error in the MLLP listener", e);
+            } finally {
+                selector.selectedKeys().clear();
+            }
+        }
+        for (MllpConnection connection : new HashSet<>(connections)) {
+            close(connection);
+        }
+        try {
+            serverChannel.close();
+            selector.close();
+        } catch (IOException e) {
+            log.warn("Error while closing the MLLP listener", e);
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if (channel == null) {
+            return;
+        }
+        if (connections.size() >= maxConnections) {
+            log.warn("Rejected MLLP connection from {}, limit of {} connections reached", channel.getRemoteAddress(), maxConnections);
+            channel.close();
+            return;
+        }
+        channel.configureBlocking(false);
+        SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+        MllpConnection connection = new MllpConnection(channel, key);
+        key.attach(connection);
+        connections.add(connection);
+    }
+
+    private void read(MllpConnection connection) {
+        readBuffer.clear();
+        int read;
+        try {
+            read = connection.getChannel().read(readBuffer);
+        } catch (IOException e) {
+            close(connection);
+            return;
+        }
+        if (read < 0) {
+            close(connection);
+            return;
+        }
+        readBuffer.flip();
+        connection.appendInput(readBuffer);
+        dispatchFrames(connection);
+        if (connection.getBufferedInputLength() > maxFrameSize) {
+            log.warn("Closed MLLP connection, frame exceeds {} bytes", maxFrameSize);
+            close(connection);
+        }
+    }
+
+    /**
+     * hand complete frames to the workers until the pipelining limit of the connection is reached
+     *
+     * @param connection connection with buffered input
+     */
+    private void dispatchFrames(MllpConnection connection) {
+        while (connection.getInFlight() < maxPipelinedMessages) {
+            byte[] frame = connection.nextFrame();
+            if (frame == null) {
+                break;
+            }
+            CompletableFuture<byte[]> response = CompletableFuture.supplyAsync(() -> processFrame(frame), workers);
+            connection.addPendingResponse(response);
+            response.whenComplete((ack, e) -> {
+                completedConnections.add(connection);
+                selector.wakeup();
+            });
+        }
+        updateInterest(connection);
+    }
+
+    private void onResponsesCompleted(MllpConnection connection) {
+        if (!connection.getKey().isValid()) {
+            return;
+        }
+        if (!connection.collectCompletedResponses()) {
+            log.error("Closed MLLP connection, a message could not be acknowledged");
+            close(connection);
+            return;
+        }
+        dispatchFrames(connection);
+    }
+
+    private void write(MllpConnection connection) {
+        try {
+            while (!connection.getOutput().isEmpty()) {
+                ByteBuffer buffer = connection.getOutput().peekFirst();
+                connection.getChannel().write(buffer);
+                if (buffer.hasRemaining()) {
+                    break;
+                }
+                connection.getOutput().removeFirst();
+            }
+        } catch (IOException e) {
+            close(connection);
+            return;
+        }
+        updateInterest(connection);
+    }
+
+    /**
+     * read only while the pipelining limit is not reached and write only while there is output
+     *
+     * @param connection connection to update
+     */
+    private void updateInterest(MllpConnection connection) {
+        if (!connection.getKey().isValid()) {
+            return;
+        }
+        int interest = 0;
+        if (connection.getInFlight() < maxPipelinedMessages) {
+            interest |= SelectionKey.OP_READ;
+        }
+        if (!connection.getOutput().isEmpty()) {
+            interest |= SelectionKey.OP_WRITE;
+        }
+        connection.getKey().interestOps(interest);
+    }
+
+    private void close(MllpConnection connection) {
+        connections.remove(connection);
+        connection.getKey().cancel();
+        try {
+            connection.getChannel().close();
+        } catch (IOException e) {
+            log.debug("Error while closing an MLLP connection", e);
+        }
+    }
+
+    /**
+     * process one HL7 message and build its ACK
+     *
+     * @param frame content of the MLLP frame
+     * @return encoded ACK message
+     */
+    private byte[] processFrame(byte[] frame) {
+        String message = new String(frame, charset);
+        String ack;
+        try {
+            ack = processMessage(message);
+        } catch (RuntimeException e) {
+            // the ACK could not be built from the message, answer with a reject which does not refer to it
+            log.warn("Could not acknowledge an MLLP message", e);
+            ack = hl7AckService.generateRejectWithoutHeader("Error while acknowledging the message.");
+        }
+        return ack.getBytes(charset);
+    }
+
+    /**
+     * process one HL7 message
+     *
+     * @param message HL7 message
+     * @return encoded ACK message
+     */
+    private String processMessage(String message) {
+        String ack;
+        try {
+            hl7Service.processMessage(message, autoMatch);
+            ack = hl7AckService.generateAck(message, AcknowledgmentCode.AA, null);
+        } catch (UnsupportedMessageTypeError e) {
+            ack = hl7AckService.generateAck(message, acknowledgeUnsupported ? AcknowledgmentCode.AA : AcknowledgmentCode.AR,
+                    acknowledgeUnsupported ? null : e.getMessage());
+        } catch (HL7Exception e) {
+            ack = hl7AckService.generateAck(message, AcknowledgmentCode.AR, "Error while parsing the message.");
+        } catch (Exception e) {
+            // duplicates, dismatches and all other errors are application errors
+            ack = hl7AckService.generateAck(message, AcknowledgmentCode.AE, e.getMessage());
+        }
+        return ack;
+    }
+}
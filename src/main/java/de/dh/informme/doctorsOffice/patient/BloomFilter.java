@@ -0,0 +1,112 @@
+package de.dh.informme.doctorsOffice.patient;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * thread safe bloom filter for Strings; elements can be added concurrently without locks
+ */
+class BloomFilter {
+
+    private final AtomicLongArray bits;
+
+    private final long bitCount;
+
+    private final int hashCount;
+
+    private final AtomicLong elementCount = new AtomicLong();
+
+    /**
+     * create a bloom filter for the given number of elements
+     *
+     * @param expectedElements          number of elements the filter is sized for
+     * @param falsePositiveProbability  wanted probability of false positives at the expected number of elements
+     */
+    BloomFilter(long expectedElements, double falsePositiveProbability) {
+        long elements = Math.max(expectedElements, 1);
+        long optimalBits = (long) Math.ceil(-elements * Math.log(falsePositiveProbability) / (Math.log(2) * Math.log(2)));
+        int longs = (int) Math.max((optimalBits + 63) / 64, 1);
+        this.bits = new AtomicLongArray(longs);
+        this.bitCount = longs * 64L;
+        this.hashCount = Math.max((int) Math.round((double) bitCount / elements * Math.log(2)), 1);
+    }
+
+    /**
+     * add an element
+     *
+     * @param element element to add
+     */
+    void add(String element) {
+        long hash = hash(element);
+        int hash1 = (int) hash;
+        int hash2 = (int) (hash >>> 32);
+        for (int i = 1; i <= hashCount; i++) {
+            long bit = Math.floorMod(hash1 + (long) i * hash2, bitCount);
+            int index = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long word = bits.get(index);
+            while ((word & mask) == 0 && !bits.compareAndSet(index, word, word | mask)) {
+                word = bits.get(index);
+            }
+        }
+        elementCount.incrementAndGet();
+    }
+
+    /**
+     * check if an element might have been added
+     *
+     * @param element element to check
+     * @return false if the element was definitely not added, true if it might have been added
+     */
+    boolean mightContain(String element) {
+        long hash = hash(element);
+        int hash1 = (int) hash;
+        int hash2 = (int) (hash >>> 32);
+        for (int i = 1; i <= hashCount; i++) {
+            long bit = Math.floorMod(hash1 + (long) i * hash2, bitCount);
+            if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * get the number of add operations
+     *
+     * @return number of added elements, including elements which were added more than once
+     */
+    long getElementCount() {
+        return elementCount.get();
+    }
+
+    /**
+     * get the size of the bit array
+     *
+     * @return size in bytes
+     */
+    long getSizeInBytes() {
+        return bitCount / 8;
+    }
+
+    /**
+     * 64 bit FNV-1a hash of the UTF-8 bytes, mixed with the finalizer of MurmurHash3
+     *
+     * @param element element to hash
+     * @return 64 bit hash
+     */
+    private long hash(String element) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : element.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,154 @@
+package de.dh.informme.doctorsOffice.patient;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * hands out unique HL7 ids for new patients
+ * <p>
+ * Ids are reserved in blocks with one locked database update, so several instances sharing one database never
+ * hand out the same id. Within a block the ids are handed out from memory without locks.
+ */
+@Service
+public class Hl7IdAllocator {
+
+    private static final String SEQUENCE_NAME = "patient-hl7-id";
+
+    @Autowired
+    private Hl7IdBlockRepository hl7IdBlockRepository;
+
+    @Autowired
+    private PatientService patientService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    /**
+     * number of ids reserved with one database update
+     */
+    @Value("${informme.hl7-id.block-size:100}")
+    private int blockSize;
+
+    /**
+     * minimum number of digits; ids are padded with zeros and get wider once all ids of this width are used
+     */
+    @Value("${informme.hl7-id.min-digits:6}")
+    private int minDigits;
+
+    private TransactionTemplate newTransaction;
+
+    private volatile Block currentBlock = new Block(0, 0);
+
+    /**
+     * guards the reservation of a new block; a lock instead of a monitor, so a virtual thread waiting for the
+     * database does not pin its carrier thread
+     */
+    private final ReentrantLock reservationLock = new ReentrantLock();
+
+    @PostConstruct
+    public void init() {
+        newTransaction = new TransactionTemplate(transactionManager);
+        newTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * get the next unused HL7 id
+     *
+     * @return unique HL7 id
+     */
+    public String nextId() {
+        while (true) {
+            String id = format(nextValue());
+            // ids of patients created before the allocator existed were chosen randomly and have to be skipped
+            if (patientService.getPatientByHl7Id(id) == null) {
+                return id;
+            }
+        }
+    }
+
+    /**
+     * get the next value of the current block or reserve a new block
+     *
+     * @return next value
+     */
+    private long nextValue() {
+        while (true) {
+            Block block = currentBlock;
+            long value = block.next.getAndIncrement();
+            if (value < block.end) {
+                return value;
+            }
+            reservationLock.lock();
+            try {
+                if (currentBlock == block) {
+                    currentBlock = reserveBlock();
+                }
+            } finally {
+                reservationLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * reserve the next block of values in the database
+     *
+     * @return reserved block
+     */
+    private Block reserveBlock() {
+        while (true) {
+            try {
+                Long start = newTransaction.execute(status -> {
+                    Hl7IdBlock sequence = hl7IdBlockRepository.findByName(SEQUENCE_NAME).orElse(null);
+                    if (sequence == null) {
+                        sequence = new Hl7IdBlock(SEQUENCE_NAME, 0);
+                    }
+                    long blockStart = sequence.getNextValue();
+                    sequence.setNextValue(blockStart + blockSize);
+                    hl7IdBlockRepository.saveAndFlush(sequence);
+                    return blockStart;
+                });
+                return new Block(start, start + blockSize);
+            } catch (DataIntegrityViolationException e) {
+                // another instance created the sequence at the same time, its row is locked on the next try
+            }
+        }
+    }
+
+    /**
+     * format a value as HL7 id
+     *
+     * @param value value to format
+     * @return value padded with zeros to the minimum number of digits
+     */
+    private String format(long value) {
+        String digits = Long.toString(value);
+        if (digits.length() >= minDigits) {
+            return digits;
+        }
+        return "0".repeat(minDigits - digits.length()) + digits;
+    }
+
+    /**
+     * range of reserved values, "next" may run past "end" when the block is used up
+     */
+    private static class Block {
+
+        private final AtomicLong next;
+
+        private final long end;
+
+        private Block(long start, long end) {
+            this.next = new AtomicLong(start);
+            this.end = end;
+        }
+    }
+}
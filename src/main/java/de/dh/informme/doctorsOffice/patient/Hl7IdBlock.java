@@ -0,0 +1,27 @@
+package de.dh.informme.doctorsOffice.patient;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Entity
+@Table(name="hl7_id_blocks")
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class Hl7IdBlock {
+
+    /**
+     * name of the id sequence
+     */
+    @Id
+    private String name;
+
+    /**
+     * first value which was not reserved by any instance yet
+     */
+    private long nextValue;
+}
@@ -0,0 +1,19 @@
+package de.dh.informme.doctorsOffice.patient;
+
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+
+import java.util.Optional;
+
+public interface Hl7IdBlockRepository extends JpaRepository<Hl7IdBlock, String> {
+
+    /**
+     * find an id sequence and lock its row until the end of the transaction
+     *
+     * @param name name of the id sequence
+     * @return found id sequence
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    Optional<Hl7IdBlock> findByName(String name);
+}
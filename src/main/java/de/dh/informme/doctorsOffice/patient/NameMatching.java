@@ -0,0 +1,145 @@
+package de.dh.informme.doctorsOffice.patient;
+
+import java.text.Normalizer;
+import java.util.Locale;
+
+/**
+ * phonetic codes and similarity of German names
+ */
+final class NameMatching {
+
+    private NameMatching() {
+    }
+
+    /**
+     * normalize a name for the comparison: lower case, umlauts written out, accents and all characters except
+     * letters and digits removed
+     *
+     * @param name name
+     * @return normalized name, empty if the name is null
+     */
+    static String normalize(String name) {
+        if (name == null) {
+            return "";
+        }
+        String lowerCase = name.toLowerCase(Locale.GERMAN)
+                .replace("ä", "ae")
+                .replace("ö", "oe")
+                .replace("ü", "ue")
+                .replace("ß", "ss");
+        String decomposed = Normalizer.normalize(lowerCase, Normalizer.Form.NFD);
+        StringBuilder normalized = new StringBuilder(decomposed.length());
+        for (int i = 0; i < decomposed.length(); i++) {
+            char c = decomposed.charAt(i);
+            if ((c >= 'a' && c <= 'z') || (c >= '0' && c <= '9')) {
+                normalized.append(c);
+            }
+        }
+        return normalized.toString();
+    }
+
+    /**
+     * get the Kölner Phonetik code of a normalized name; names which sound alike, like "Müller" and "Mueller" or
+     * "Meier" and "Meyer", get the same code
+     *
+     * @param name normalized name, see {@link #normalize}
+     * @return phonetic code, empty if the name has no letters
+     */
+    static String phoneticCode(String name) {
+        StringBuilder code = new StringBuilder(name.length());
+        char previousDigit = 0;
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c < 'a' || c > 'z') {
+                continue;
+            }
+            char before = i > 0 ? name.charAt(i - 1) : 0;
+            char after = i + 1 < name.length() ? name.charAt(i + 1) : 0;
+            String digits = switch (c) {
+                case 'a', 'e', 'i', 'j', 'o', 'u', 'y' -> "0";
+                // "h" is silent; the same digit before and after it is written once
+                case 'h' -> "";
+                case 'b' -> "1";
+                case 'p' -> after == 'h' ? "3" : "1";
+                case 'd', 't' -> after == 'c' || after == 's' || after == 'z' ? "8" : "2";
+                case 'f', 'v', 'w' -> "3";
+                case 'g', 'k', 'q' -> "4";
+                case 'c' -> {
+                    if (i == 0) {
+                        yield "ahkloqrux".indexOf(after) >= 0 ? "4" : "8";
+                    }
+                    yield before != 's' && before != 'z' && "ahkoqux".indexOf(after) >= 0 ? "4" : "8";
+                }
+                case 'x' -> before == 'c' || before == 'k' || before == 'q' ? "8" : "48";
+                case 'l' -> "5";
+                case 'm', 'n' -> "6";
+                case 'r' -> "7";
+                case 's', 'z' -> "8";
+                default -> "";
+            };
+            for (int j = 0; j < digits.length(); j++) {
+                char digit = digits.charAt(j);
+                // repeated digits are written once, "0" is only kept at the start
+                if (digit != previousDigit && (digit != '0' || code.isEmpty())) {
+                    code.append(digit);
+                }
+                previousDigit = digit;
+            }
+        }
+        return code.toString();
+    }
+
+    /**
+     * get the Jaro-Winkler similarity of two normalized names
+     *
+     * @param name      first name to compare
+     * @param otherName second name to compare
+     * @return similarity between 0 (nothing in common) and 1 (equal)
+     */
+    static double similarity(String name, String otherName) {
+        if (name.equals(otherName)) {
+            return 1;
+        }
+        if (name.isEmpty() || otherName.isEmpty()) {
+            return 0;
+        }
+        int window = Math.max(0, Math.max(name.length(), otherName.length()) / 2 - 1);
+        boolean[] matched = new boolean[name.length()];
+        boolean[] otherMatched = new boolean[otherName.length()];
+        int matches = 0;
+        for (int i = 0; i < name.length(); i++) {
+            int from = Math.max(0, i - window);
+            int to = Math.min(otherName.length() - 1, i + window);
+            for (int j = from; j <= to; j++) {
+                if (!otherMatched[j] && name.charAt(i) == otherName.charAt(j)) {
+                    matched[i] = true;
+                    otherMatched[j] = true;
+                    matches++;
+                    break;
+                }
+            }
+        }
+        if (matches == 0) {
+            return 0;
+        }
+        int transpositions = 0;
+        int j = 0;
+        for (int i = 0; i < name.length(); i++) {
+            if (matched[i]) {
+                while (!otherMatched[j]) {
+                    j++;
+                }
+                if (name.charAt(i) != otherName.charAt(j)) {
+                    transpositions++;
+                }
+                j++;
+            }
+        }
+        double jaro = ((double) matches / name.length() + (double) matches / otherName.length() + (matches - transpositions / 2.0) / matches) / 3;
+        int prefix = 0;
+        while (prefix < 4 && prefix < name.length() && prefix < otherName.length() && name.charAt(prefix) == otherName.charAt(prefix)) {
+            prefix++;
+        }
+        return jaro + prefix * 0.1 * (1 - jaro);
+    }
+}
@@ -1,23 +1,52 @@
 package de.dh.informme.doctorsOffice.patient;
 
 import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.ColumnDefault;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.annotations.UpdateTimestamp;
+import org.hibernate.id.enhanced.TableGenerator;
 
 import java.util.Date;
 
 @Entity
-@Table(name="patients")
+@Table(name="patients", indexes = {
+        @Index(name = "uk_patients_hl7_id", columnList = "hl7Id", unique = true),
+        @Index(name = "uk_patients_card_identity", columnList = "cardIdentity", unique = true),
+        @Index(name = "idx_patients_name_birthday", columnList = "lastName, firstName, birthday")
+})
+@NamedQuery(name = "Patient.findViewByPatientId", query = "SELECT new de.dh.informme.doctorsOffice.patient.PatientView(p.patientId, p.hl7Id, p.firstName, "
+        + "p.lastName, p.birthday, p.address, p.telephone, p.email, p.sex, p.version, p.lastModified) FROM Patient p WHERE p.patientId = :patientId")
+@NamedQuery(name = "Patient.findVersionByPatientId", query = "SELECT new de.dh.informme.application.ResourceVersion(p.version, p.lastModified) "
+        + "FROM Patient p WHERE p.patientId = :patientId")
 @AllArgsConstructor
+@NoArgsConstructor
 @Data
 public class Patient {
 
+    /**
+     * number of patientIds reserved at once; the next free patientId is kept in the hl7_id_blocks table
+     */
+    public static final int PATIENT_ID_BLOCK_SIZE = 50;
+
     /**
      * unique ID
      */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(generator = "patient_ids")
+    @GenericGenerator(name = "patient_ids", type = TableGenerator.class, parameters = {
+            @Parameter(name = TableGenerator.TABLE_PARAM, value = "hl7_id_blocks"),
+            @Parameter(name = TableGenerator.SEGMENT_COLUMN_PARAM, value = "name"),
+            @Parameter(name = TableGenerator.SEGMENT_VALUE_PARAM, value = "patients"),
+            @Parameter(name = TableGenerator.VALUE_COLUMN_PARAM, value = "next_value"),
+            @Parameter(name = TableGenerator.INCREMENT_PARAM, value = "" + PATIENT_ID_BLOCK_SIZE),
+            @Parameter(name = TableGenerator.OPT_PARAM, value = "pooled-lo")
+    })
     private Long patientId;
 
     /**
@@ -61,7 +90,42 @@ public class Patient {
      */
     private String sex;
 
-    public Patient() {
-        patientId = 1L;
+    /**
+     * hash of the demographic data, see {@link PatientFingerprint}; a health card with the same hash has the same
+     * data, so it is not compared field by field. Patients saved before the fingerprint was introduced have none.
+     */
+    @JsonIgnore
+    private Long demographicsFingerprint;
+
+    /**
+     * hash of the name and birthday of a patient created from a health card, see {@link PatientCardIdentity}; it is
+     * unique, so two instances reading the same new card can not both save the patient. Other patients have none.
+     */
+    @JsonIgnore
+    private String cardIdentity;
+
+    /**
+     * version for optimistic locking and the ETag of the patient; rows saved before it was introduced start with 0
+     */
+    @Version
+    @ColumnDefault("0")
+    @JsonIgnore
+    private Long version;
+
+    /**
+     * time of the last insert or update
+     */
+    @UpdateTimestamp
+    @JsonIgnore
+    private Date lastModified;
+
+    @PrePersist
+    @PreUpdate
+    private void updateHashes() {
+        demographicsFingerprint = PatientFingerprint.of(this);
+        if (cardIdentity != null) {
+            // follows changes of the name and birthday
+            cardIdentity = PatientCardIdentity.of(this);
+        }
     }
 }
@@ -0,0 +1,51 @@
+package de.dh.informme.doctorsOffice.patient;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.SimpleDateFormat;
+import java.util.Base64;
+import java.util.Date;
+
+/**
+ * identity of a patient created from a health card, see {@link Patient#getCardIdentity()}
+ * <p>
+ * The SHA-256 hash of the name and the birthday, compared as the lookup of a card compares them: the names exactly
+ * and the birthday by its day. Two instances reading the same new card compute the same identity, so the unique index
+ * lets only one of them save the patient.
+ */
+public final class PatientCardIdentity {
+
+    private PatientCardIdentity() {
+    }
+
+    /**
+     * get the identity of the stored data of a patient
+     *
+     * @param patient the patient
+     * @return identity as URL-safe Base64 without padding
+     */
+    public static String of(Patient patient) {
+        return of(patient.getFirstName(), patient.getLastName(), patient.getBirthday());
+    }
+
+    /**
+     * get the identity of a name and birthday
+     *
+     * @param firstName first name
+     * @param lastName  last name
+     * @param birthday  birthday
+     * @return identity as URL-safe Base64 without padding
+     */
+    public static String of(String firstName, String lastName, Date birthday) {
+        // the separator can not be part of a name read from a card, it is the HL7 field separator
+        String key = firstName + "|" + lastName + "|" + (birthday == null ? null : new SimpleDateFormat("dd.MM.yyyy").format(birthday));
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform supports SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+}
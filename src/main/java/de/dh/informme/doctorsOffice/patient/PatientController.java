@@ -1,18 +1,42 @@
 package de.dh.informme.doctorsOffice.patient;
 
 import ca.uhn.hl7v2.HL7Exception;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.dh.informme.application.ResourceVersion;
 import de.dh.informme.error.DismatchError;
 import de.dh.informme.error.DuplicatePatientError;
 import de.dh.informme.hl7Mock.Hl7MockService;
+import de.dh.informme.doctorsOffice.hl7.Hl7BatchResult;
+import de.dh.informme.doctorsOffice.hl7.Hl7BatchService;
+import de.dh.informme.doctorsOffice.hl7.Hl7IngestService;
 import de.dh.informme.doctorsOffice.hl7.Hl7Service;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.MessageSource;
 import org.springframework.context.i18n.LocaleContextHolder;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.servlet.ModelAndView;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
+
 @Controller
 @RequestMapping("/patient")
 public class PatientController {
@@ -23,12 +47,33 @@ public class PatientController {
     @Autowired
     private Hl7Service hl7Service;
 
+    @Autowired
+    private Hl7BatchService hl7BatchService;
+
+    @Autowired
+    private Hl7IngestService hl7IngestService;
+
     @Autowired
     private Hl7MockService hl7MockService;
 
+    @Autowired
+    private PatientImportService patientImportService;
+
+    @Autowired
+    private PatientExportService patientExportService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
     @Autowired
     private MessageSource messageSource;
 
+    /**
+     * seconds after which a terminal should retry a health card which was rejected or timed out
+     */
+    @Value("${informme.hl7.ingest.retry-after:5}")
+    private int retryAfter;
+
     /**
      * get mapping at "patient/{id}"
      *
@@ -40,10 +85,10 @@ public class PatientController {
         // define the html page to show when this mapping is called
         ModelAndView modelAndView = new ModelAndView("patient/patient_show_data");
         // retrieve the patient from the database
-        Patient patient = patientService.getPatientById(id);
+        PatientView patient = patientService.getPatientViewById(id);
         if (patient != null) {
             // show the page with patient information only if patient is not null (patient was found)
-            modelAndView.addObject(patient);
+            modelAndView.addObject("patient", patient);
         } else {
             //wenn kein Patient anhand der (hl7) id gefunden werden konnte => neuen Patienten anlegen
             return new ModelAndView("redirect:/index");
@@ -83,15 +128,28 @@ public class PatientController {
      * REST API
      *
      * get patient by id
-     * @param id id of the requested patient
-     * @return found patient
+     * <p>
+     * The response has an ETag and a Last-Modified header. Requests with a matching If-None-Match or
+     * If-Modified-Since header are answered with 304 Not Modified without loading the patient.
+     *
+     * @param id      id of the requested patient
+     * @param request request with the conditional headers
+     * @return found patient, null if the patient was not modified
      */
     @GetMapping("/get/{id}")
-    public ResponseEntity<?> getPatientByRestRequest(@PathVariable(value = "id") Long id) {
+    public ResponseEntity<?> getPatientByRestRequest(@PathVariable(value = "id") Long id, WebRequest request) {
+        ResourceVersion version = patientService.getPatientVersion(id);
+        if (version != null && request.checkNotModified(ResourceVersion.etag(version.getVersion()), ResourceVersion.lastModifiedMillis(version.getLastModified()))) {
+            return null;
+        }
         // retrieve the patient from the database
-        Patient patient = patientService.getPatientById(id);
+        PatientView patient = patientService.getPatientViewById(id);
         if (patient != null) {
-            return ResponseEntity.ok().body(patient);
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok().eTag(ResourceVersion.etag(patient.getVersion()));
+            if (patient.getLastModified() != null) {
+                response.lastModified(patient.getLastModified().getTime());
+            }
+            return response.body(patient);
         } else {
             return ResponseEntity.ok().body(messageSource.getMessage("patient.message.notFound", new Object[]{id}, LocaleContextHolder.getLocale()));
         }
@@ -131,27 +189,92 @@ public class PatientController {
      * REST API
      * read health card
      *
-     * @param hl7Message hl7 message to read
+     * @param hl7Message    hl7 message to read
+     * @param createSimilar save the patient even if patients with a similar name and the same birthday exist; for
+     *                      the reception, after it confirmed that the patient is another person, e.g. a twin
      * @return found DB-patient based on health card
      */
     @PostMapping("/read")
-    public ResponseEntity<?> readHealthCard(@RequestBody String hl7Message, @RequestParam(value = "autoUpdate", required = false, defaultValue = "true") boolean autoMatch) {
+    public ResponseEntity<?> readHealthCard(@RequestBody String hl7Message, @RequestParam(value = "autoUpdate", required = false, defaultValue = "true") boolean autoMatch,
+                                            @RequestParam(value = "createSimilar", required = false, defaultValue = "false") boolean createSimilar) {
         try {
-            Patient patient = hl7Service.processMessage(hl7Message, autoMatch);
+            return healthCardResponse(hl7Service.processMessage(hl7Message, autoMatch, createSimilar), null);
+        } catch (Exception e) {
+            return healthCardResponse(null, e);
+        }
+    }
+
+    /**
+     * REST API
+     * read health card without blocking the request thread
+     * <p>
+     * The message is processed by the bounded ingest queue. If the queue is full, the request is answered with
+     * 429 Too Many Requests, if it is not processed in time with 503 Service Unavailable; both with Retry-After.
+     *
+     * @param hl7Message hl7 message to read
+     * @return found DB-patient based on health card, completed when the message has been processed
+     */
+    @PostMapping("/read-async")
+    public CompletableFuture<ResponseEntity<?>> readHealthCardAsync(@RequestBody String hl7Message, @RequestParam(value = "autoUpdate", required = false, defaultValue = "true") boolean autoMatch) {
+        try {
+            return hl7IngestService.submit(hl7Message, autoMatch).handle(this::healthCardResponse);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfter))
+                    .body("Too many health cards are waiting, please try again later."));
+        }
+    }
+
+    /**
+     * build the response to a read health card
+     *
+     * @param patient found or saved patient
+     * @param error   exception thrown while processing the message, null if there was none
+     * @return response for the terminal
+     */
+    private ResponseEntity<?> healthCardResponse(Patient patient, Throwable error) {
+        if (error instanceof CompletionException && error.getCause() != null) {
+            error = error.getCause();
+        }
+        if (error == null) {
             if (patient != null) {
                 return ResponseEntity.ok().body(patient);
             } else {
                 return ResponseEntity.badRequest().body("Patient not found");
             }
-        } catch (HL7Exception e) {
+        } else if (error instanceof HL7Exception) {
             return ResponseEntity.badRequest().body("Error while parsing the message.");
-        } catch (DuplicatePatientError e) {
+        } else if (error instanceof DuplicatePatientError) {
             return ResponseEntity.ok().body(messageSource.getMessage("patient.message.duplicate", null, LocaleContextHolder.getLocale()));
-        } catch (DismatchError e) {
+        } else if (error instanceof DismatchError) {
             return ResponseEntity.ok().body(messageSource.getMessage("patient.message.dismatch", null, LocaleContextHolder.getLocale()));
-        } catch (Exception e) {
-            return ResponseEntity.badRequest().body(e.getMessage());
+        } else if (error instanceof TimeoutException) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfter))
+                    .body("The health card could not be read in time, please try again later.");
+        } else {
+            return ResponseEntity.badRequest().body(error.getMessage());
+        }
+    }
+
+    /**
+     * REST API
+     * read a batch of health cards
+     *
+     * @param hl7Batch  HL7 messages to read, separated by MSH segments or framed by FHS/BHS segments
+     * @return one result per message, in the order of the batch
+     */
+    @PostMapping("/read-batch")
+    public ResponseEntity<?> readHealthCardBatch(@RequestBody String hl7Batch, @RequestParam(value = "autoUpdate", required = false, defaultValue = "true") boolean autoMatch) {
+        List<Hl7BatchResult> results = hl7BatchService.processBatch(hl7Batch, autoMatch);
+        for (Hl7BatchResult result : results) {
+            if (result.getStatus() == Hl7BatchResult.Status.DUPLICATE) {
+                result.setMessage(messageSource.getMessage("patient.message.duplicate", null, LocaleContextHolder.getLocale()));
+            } else if (result.getStatus() == Hl7BatchResult.Status.DISMATCH) {
+                result.setMessage(messageSource.getMessage("patient.message.dismatch", null, LocaleContextHolder.getLocale()));
+            }
         }
+        return ResponseEntity.ok().body(results);
     }
 
     /**
@@ -164,10 +287,73 @@ public class PatientController {
     @PostMapping("/create-patient")
     public ResponseEntity<?> createPatient(@RequestBody Patient patient) {
         try {
+            // the patientId is always generated
+            patient.setPatientId(null);
             Patient savedPatient = patientService.savePatient(patient);
             return ResponseEntity.ok().body(savedPatient);
         } catch (Exception e) {
             return ResponseEntity.internalServerError().body("Error while processing your request");
         }
     }
+
+    /**
+     * REST API
+     * import patients from a CSV or JSON lines file
+     * <p>
+     * The response is written while the file is imported: one JSON line per progress report after every chunk,
+     * one per row which was not imported and a final line with the totals.
+     *
+     * @param body            content of the file, UTF-8 encoded
+     * @param format          "csv" or "ndjson"
+     * @param checkDuplicates skip patients whose HL7 id already exists
+     * @param response        response to write the progress to
+     * @throws IOException is thrown when the file could not be read or the response could not be written
+     */
+    @PostMapping("/import")
+    public void importPatients(InputStream body, @RequestParam(value = "format", required = false, defaultValue = "csv") String format,
+                               @RequestParam(value = "checkDuplicates", required = false, defaultValue = "true") boolean checkDuplicates,
+                               HttpServletResponse response) throws IOException {
+        PatientImportService.Format importFormat;
+        try {
+            importFormat = PatientImportService.Format.valueOf(format.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Unknown format " + format + ".");
+            return;
+        }
+        response.setContentType("application/x-ndjson");
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        PrintWriter writer = response.getWriter();
+        Reader reader = new InputStreamReader(body, StandardCharsets.UTF_8);
+        patientImportService.importPatients(reader, importFormat, checkDuplicates, event -> {
+            try {
+                writer.println(objectMapper.writeValueAsString(event));
+                writer.flush();
+            } catch (JsonProcessingException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+    }
+
+    /**
+     * REST API
+     * export all patients
+     *
+     * @param format   "ndjson" for one JSON object per line or "hl7" for one ADT^A01 message per patient
+     * @param response response to write the patients to
+     * @throws IOException is thrown when the response could not be written
+     */
+    @GetMapping("/export")
+    public void exportPatients(@RequestParam(value = "format", required = false, defaultValue = "ndjson") String format,
+                               HttpServletResponse response) throws IOException {
+        PatientExportService.Format exportFormat;
+        try {
+            exportFormat = PatientExportService.Format.valueOf(format.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Unknown format " + format + ".");
+            return;
+        }
+        response.setContentType(exportFormat == PatientExportService.Format.NDJSON ? "application/x-ndjson" : "application/hl7-v2");
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        patientExportService.exportPatients(exportFormat, response.getWriter());
+    }
 }
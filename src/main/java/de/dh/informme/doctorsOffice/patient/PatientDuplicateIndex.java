@@ -0,0 +1,269 @@
+package de.dh.informme.doctorsOffice.patient;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * in-memory blocking index for patients with a similar name and the same birthday
+ * <p>
+ * Every patient is stored in two blocks: the birthday with the Kölner Phonetik code of the last name and the
+ * birthday with the code of the first name, so a typo in one of the names still finds the patient. Only the few
+ * patients of the blocks are compared by their Jaro-Winkler similarity. The index is built on startup, updated on
+ * every save of this instance and rebuilt periodically. Entries with outdated names are only removed by the rebuild,
+ * so the callers have to check the found patients against the database.
+ */
+@Slf4j
+@Service
+public class PatientDuplicateIndex {
+
+    @Autowired
+    private PatientRepository patientRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    /**
+     * if false, only patients with exactly the same name and birthday are duplicates
+     */
+    @Value("${informme.patient.duplicate-index.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * minimum mean similarity of first and last name, between 0 and 1, for a patient to count as duplicate
+     */
+    @Value("${informme.patient.duplicate-index.threshold:0.9}")
+    private double threshold;
+
+    private volatile Index index = new Index();
+
+    /**
+     * entries which were added while the index is rebuilt, null if no rebuild is running; guarded by "this"
+     */
+    private List<Entry> entriesAddedDuringRebuild;
+
+    @PostConstruct
+    public void init() {
+        Gauge.builder("informme.patient.duplicate-index.entries", this, duplicateIndex -> duplicateIndex.index.size.get())
+                .register(meterRegistry);
+        if (enabled) {
+            rebuild();
+        }
+    }
+
+    /**
+     * check whether the index is used
+     *
+     * @return true if similar patients are searched
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * add a saved patient; an entry with the former name of the patient stays until the next rebuild
+     *
+     * @param patient saved patient
+     */
+    public void add(Patient patient) {
+        if (!enabled || patient.getPatientId() == null || patient.getBirthday() == null) {
+            return;
+        }
+        Entry entry = new Entry(patient.getPatientId(), patient.getBirthday().getTime(),
+                NameMatching.normalize(patient.getFirstName()), NameMatching.normalize(patient.getLastName()));
+        synchronized (this) {
+            index.add(entry);
+            if (entriesAddedDuringRebuild != null) {
+                entriesAddedDuringRebuild.add(entry);
+            }
+        }
+    }
+
+    /**
+     * find patients with a similar name and the same birthday
+     *
+     * @param firstName the patient's first name
+     * @param lastName  the patient's last name
+     * @param birthday  the patient's birthday
+     * @return patientIds of the similar patients according to the index
+     */
+    public Set<Long> findSimilarPatientIds(String firstName, String lastName, Date birthday) {
+        Set<Long> patientIds = new LinkedHashSet<>();
+        if (!enabled || birthday == null) {
+            return patientIds;
+        }
+        String normalizedFirstName = NameMatching.normalize(firstName);
+        String normalizedLastName = NameMatching.normalize(lastName);
+        Index current = index;
+        for (String key : keys(birthday.getTime(), normalizedFirstName, normalizedLastName)) {
+            Entry[] block = current.blocks.get(key);
+            if (block == null) {
+                continue;
+            }
+            for (Entry entry : block) {
+                if (!patientIds.contains(entry.patientId) && entry.isSimilar(normalizedFirstName, normalizedLastName, threshold)) {
+                    patientIds.add(entry.patientId);
+                }
+            }
+        }
+        return patientIds;
+    }
+
+    /**
+     * check whether a patient from the database has a similar name and the same birthday
+     *
+     * @param patient   patient from the database
+     * @param firstName the first name to compare with
+     * @param lastName  the last name to compare with
+     * @param birthday  the birthday to compare with
+     * @return true if the patient counts as duplicate
+     */
+    public boolean isSimilar(Patient patient, String firstName, String lastName, Date birthday) {
+        if (patient.getBirthday() == null || birthday == null || patient.getBirthday().getTime() != birthday.getTime()) {
+            return false;
+        }
+        Entry entry = new Entry(patient.getPatientId(), patient.getBirthday().getTime(),
+                NameMatching.normalize(patient.getFirstName()), NameMatching.normalize(patient.getLastName()));
+        return entry.isSimilar(NameMatching.normalize(firstName), NameMatching.normalize(lastName), threshold);
+    }
+
+    /**
+     * rebuild the index from the database
+     */
+    @Scheduled(fixedDelayString = "${informme.patient.duplicate-index.rebuild-interval:86400000}", initialDelayString = "${informme.patient.duplicate-index.rebuild-interval:86400000}")
+    public void rebuild() {
+        if (!enabled) {
+            return;
+        }
+        synchronized (this) {
+            entriesAddedDuringRebuild = new ArrayList<>();
+        }
+        Index newIndex = new Index();
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                try (Stream<Object[]> patients = patientRepository.streamNamesAndBirthdays()) {
+                    patients.forEach(patient -> {
+                        if (patient[3] != null) {
+                            newIndex.add(new Entry((Long) patient[0], ((Date) patient[3]).getTime(),
+                                    NameMatching.normalize((String) patient[1]), NameMatching.normalize((String) patient[2])));
+                        }
+                    });
+                }
+            });
+            synchronized (this) {
+                entriesAddedDuringRebuild.forEach(newIndex::add);
+                index = newIndex;
+            }
+            log.debug("Rebuilt duplicate index with {} patients", newIndex.size.get());
+        } finally {
+            synchronized (this) {
+                entriesAddedDuringRebuild = null;
+            }
+        }
+    }
+
+    /**
+     * get the keys of the blocks of a patient
+     *
+     * @param birthday  birthday in milliseconds
+     * @param firstName normalized first name
+     * @param lastName  normalized last name
+     * @return distinct keys
+     */
+    private static String[] keys(long birthday, String firstName, String lastName) {
+        String lastNameKey = birthday + ":" + NameMatching.phoneticCode(lastName);
+        String firstNameKey = birthday + ":" + NameMatching.phoneticCode(firstName);
+        return lastNameKey.equals(firstNameKey) ? new String[]{lastNameKey} : new String[]{lastNameKey, firstNameKey};
+    }
+
+    /**
+     * blocks of the index; a block is replaced instead of changed, so it can be read without locking
+     */
+    private static class Index {
+
+        private final Map<String, Entry[]> blocks = new ConcurrentHashMap<>();
+
+        private final AtomicLong size = new AtomicLong();
+
+        /**
+         * add an entry; called by one thread at a time
+         *
+         * @param entry entry to add
+         */
+        private void add(Entry entry) {
+            boolean added = false;
+            for (String key : keys(entry.birthday, entry.firstName, entry.lastName)) {
+                Entry[] block = blocks.get(key);
+                if (block == null) {
+                    blocks.put(key, new Entry[]{entry});
+                    added = true;
+                } else if (Arrays.stream(block).noneMatch(entry::equals)) {
+                    Entry[] newBlock = Arrays.copyOf(block, block.length + 1);
+                    newBlock[block.length] = entry;
+                    blocks.put(key, newBlock);
+                    added = true;
+                }
+            }
+            if (added) {
+                size.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * patient in the index
+     */
+    private static class Entry {
+
+        private final long patientId;
+
+        private final long birthday;
+
+        private final String firstName;
+
+        private final String lastName;
+
+        private Entry(long patientId, long birthday, String firstName, String lastName) {
+            this.patientId = patientId;
+            this.birthday = birthday;
+            this.firstName = firstName;
+            this.lastName = lastName;
+        }
+
+        private boolean isSimilar(String otherFirstName, String otherLastName, double threshold) {
+            double similarity = (NameMatching.similarity(firstName, otherFirstName) + NameMatching.similarity(lastName, otherLastName)) / 2;
+            return similarity >= threshold;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Entry entry && patientId == entry.patientId && birthday == entry.birthday
+                    && firstName.equals(entry.firstName) && lastName.equals(entry.lastName);
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(patientId);
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package de.dh.informme.doctorsOffice.patient;
+
+import ca.uhn.hl7v2.HL7Exception;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.dh.informme.doctorsOffice.hl7.Hl7MessageBuilder;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.stream.Stream;
+
+/**
+ * exports all patients as JSON lines or as HL7 ADT^A01 messages
+ * <p>
+ * The patients are streamed from the database and every patient is detached after it was written, so neither the
+ * persistence context nor the heap grows with the number of patients.
+ */
+@Slf4j
+@Service
+public class PatientExportService {
+
+    /**
+     * supported export formats
+     */
+    public enum Format {
+        /**
+         * one patient as JSON object per line, like GET /patient/get/{id}
+         */
+        NDJSON,
+        /**
+         * one ADT^A01 message per patient; the messages can be read again with POST /patient/read-batch
+         */
+        HL7
+    }
+
+    @Autowired
+    private PatientRepository patientRepository;
+
+    @Autowired
+    private Hl7MessageBuilder hl7MessageBuilder;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * write all patients
+     *
+     * @param format format of the export
+     * @param writer writer to write the patients to
+     * @return number of exported patients
+     * @throws IOException is thrown when the patients could not be written
+     */
+    public long exportPatients(Format format, Writer writer) throws IOException {
+        TransactionTemplate readOnlyTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction.setReadOnly(true);
+        try {
+            Long exported = readOnlyTransaction.execute(status -> {
+                long count = 0;
+                try (Stream<Patient> patients = patientRepository.streamAll()) {
+                    for (Patient patient : (Iterable<Patient>) patients::iterator) {
+                        if (writePatient(format, patient, writer)) {
+                            count++;
+                        }
+                        entityManager.detach(patient);
+                    }
+                }
+                return count;
+            });
+            writer.flush();
+            return exported == null ? 0 : exported;
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * write one patient
+     *
+     * @param format  format of the export
+     * @param patient patient to write
+     * @param writer  writer to write the patient to
+     * @return false if the patient could not be converted to an HL7 message
+     */
+    private boolean writePatient(Format format, Patient patient, Writer writer) {
+        try {
+            if (format == Format.NDJSON) {
+                writer.write(objectMapper.writeValueAsString(patient));
+                writer.write('\n');
+            } else {
+                writer.write(hl7MessageBuilder.buildAdmission(patient));
+                writer.write('\r');
+            }
+            return true;
+        } catch (HL7Exception e) {
+            log.warn("Could not export patient {} as HL7 message: {}", patient.getPatientId(), e.getMessage());
+            return false;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
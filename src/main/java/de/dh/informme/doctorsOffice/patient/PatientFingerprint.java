@@ -0,0 +1,74 @@
+package de.dh.informme.doctorsOffice.patient;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+/**
+ * 64 bit hash of the demographic data of a patient, see {@link Patient#getDemographicsFingerprint()}
+ * <p>
+ * The fields are hashed as they are compared by the dismatch check: the birthday by its day, all other fields
+ * exactly. A missing value is hashed differently from an empty one.
+ */
+public final class PatientFingerprint {
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private PatientFingerprint() {
+    }
+
+    /**
+     * get the fingerprint of the stored data of a patient
+     *
+     * @param patient the patient
+     * @return fingerprint
+     */
+    public static long of(Patient patient) {
+        return of(patient.getFirstName(), patient.getLastName(), patient.getBirthday(), patient.getAddress(),
+                patient.getSex(), patient.getTelephone(), patient.getEmail());
+    }
+
+    /**
+     * get the fingerprint of demographic data
+     *
+     * @param firstName first name
+     * @param lastName  last name
+     * @param birthday  birthday
+     * @param address   address as String
+     * @param sex       sex
+     * @param telephone telephone number
+     * @param email     email address
+     * @return fingerprint
+     */
+    public static long of(String firstName, String lastName, Date birthday, String address, String sex, String telephone, String email) {
+        long hash = FNV_OFFSET_BASIS;
+        hash = add(hash, firstName);
+        hash = add(hash, lastName);
+        hash = add(hash, birthday == null ? null : new SimpleDateFormat("dd.MM.yyyy").format(birthday));
+        hash = add(hash, address);
+        hash = add(hash, sex);
+        hash = add(hash, telephone);
+        return add(hash, email);
+    }
+
+    /**
+     * add a value with FNV-1a; every value is terminated, so moving characters between fields changes the hash
+     *
+     * @param hash  hash of the previous values
+     * @param value value to add
+     * @return new hash
+     */
+    private static long add(long hash, String value) {
+        if (value == null) {
+            return (hash ^ 0x1) * FNV_PRIME;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            hash = (hash ^ (c & 0xff)) * FNV_PRIME;
+            hash = (hash ^ (c >>> 8)) * FNV_PRIME;
+        }
+        // the terminator is a zero byte, a missing value is a single one byte
+        return hash * FNV_PRIME;
+    }
+}
@@ -0,0 +1,39 @@
+package de.dh.informme.doctorsOffice.patient;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * reports HL7 ids which belong to more than one patient on startup
+ * <p>
+ * Such ids come from databases written before the HL7 id had to be unique. The schema update can not create the
+ * unique index uk_patients_hl7_id while they exist and only logs the failed statement, so the database does not keep
+ * the HL7 ids unique. The duplicates have to be cleaned up by hand, see the README.
+ */
+@Slf4j
+@Component
+public class PatientHl7IdCheck {
+
+    /**
+     * maximum number of HL7 ids which are logged
+     */
+    private static final int LOGGED_HL7_IDS = 100;
+
+    @Autowired
+    private PatientRepository patientRepository;
+
+    @PostConstruct
+    public void check() {
+        List<String> duplicateHl7Ids = patientRepository.findDuplicateHl7Ids();
+        if (duplicateHl7Ids.isEmpty()) {
+            return;
+        }
+        log.error("{} HL7 ids belong to more than one patient, so the unique index uk_patients_hl7_id is missing; "
+                        + "clean them up and restart to create it: {}", duplicateHl7Ids.size(),
+                duplicateHl7Ids.subList(0, Math.min(LOGGED_HL7_IDS, duplicateHl7Ids.size())));
+    }
+}
@@ -0,0 +1,55 @@
+package de.dh.informme.doctorsOffice.patient;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * moves the next free patientId behind the largest existing patientId on startup
+ * <p>
+ * The patientIds are reserved in blocks from the hl7_id_blocks table. Patients which were saved before, with ids
+ * generated by the database, must not be overwritten by ids from a new or outdated block.
+ */
+@Slf4j
+@Component
+public class PatientIdBlockAligner {
+
+    /**
+     * name of the patientId sequence, see {@link Patient#getPatientId()}
+     */
+    static final String SEQUENCE_NAME = "patients";
+
+    @Autowired
+    private Hl7IdBlockRepository hl7IdBlockRepository;
+
+    @Autowired
+    private PatientRepository patientRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @PostConstruct
+    public void align() {
+        while (true) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    Hl7IdBlock sequence = hl7IdBlockRepository.findByName(SEQUENCE_NAME).orElse(null);
+                    Long maxPatientId = patientRepository.findMaxPatientId();
+                    long nextFreePatientId = maxPatientId == null ? 1 : maxPatientId + 1;
+                    if (sequence == null) {
+                        hl7IdBlockRepository.saveAndFlush(new Hl7IdBlock(SEQUENCE_NAME, nextFreePatientId));
+                    } else if (sequence.getNextValue() < nextFreePatientId) {
+                        log.info("Moved the next patientId from {} to {}", sequence.getNextValue(), nextFreePatientId);
+                        sequence.setNextValue(nextFreePatientId);
+                    }
+                });
+                return;
+            } catch (DataIntegrityViolationException e) {
+                // another instance created the sequence at the same time, its row is locked on the next try
+            }
+        }
+    }
+}
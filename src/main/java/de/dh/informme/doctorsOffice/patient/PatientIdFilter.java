@@ -0,0 +1,163 @@
+package de.dh.informme.doctorsOffice.patient;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * in-memory membership filter over all known HL7 ids of the patients
+ * <p>
+ * HL7 ids which are definitely unknown are answered without a database query. The filter is built on startup,
+ * updated on every save of this instance and rebuilt periodically, which also picks up patients saved by other
+ * instances.
+ */
+@Slf4j
+@Service
+public class PatientIdFilter {
+
+    @Autowired
+    private PatientRepository patientRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    /**
+     * if false, every HL7 id is looked up in the database
+     */
+    @Value("${informme.patient.id-filter.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * minimum number of HL7 ids the filter is sized for
+     */
+    @Value("${informme.patient.id-filter.expected-ids:1000000}")
+    private long expectedIds;
+
+    /**
+     * wanted probability of false positives
+     */
+    @Value("${informme.patient.id-filter.false-positive-probability:0.01}")
+    private double falsePositiveProbability;
+
+    private volatile BloomFilter filter;
+
+    /**
+     * ids which were added while the filter is rebuilt, null if no rebuild is running
+     */
+    private volatile Set<String> idsAddedDuringRebuild;
+
+    private Counter definiteMisses;
+
+    private Counter falsePositives;
+
+    @PostConstruct
+    public void init() {
+        definiteMisses = meterRegistry.counter("informme.patient.id-filter.lookups", "result", "definite-miss");
+        falsePositives = meterRegistry.counter("informme.patient.id-filter.lookups", "result", "false-positive");
+        Gauge.builder("informme.patient.id-filter.false-positive-rate", this, PatientIdFilter::getFalsePositiveRate)
+                .description("share of unknown HL7 ids which were not filtered out")
+                .register(meterRegistry);
+        Gauge.builder("informme.patient.id-filter.memory", this, idFilter -> idFilter.filter == null ? 0 : idFilter.filter.getSizeInBytes())
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("informme.patient.id-filter.ids", this, idFilter -> idFilter.filter == null ? 0 : idFilter.filter.getElementCount())
+                .register(meterRegistry);
+        if (enabled) {
+            rebuild();
+        }
+    }
+
+    /**
+     * check if a patient with the given HL7 id might exist
+     *
+     * @param hl7Id HL7 id to check
+     * @return false if there is definitely no patient with this HL7 id
+     */
+    public boolean mightContain(String hl7Id) {
+        if (!enabled) {
+            return true;
+        }
+        if (hl7Id == null) {
+            return false;
+        }
+        Set<String> addedDuringRebuild = idsAddedDuringRebuild;
+        if (filter.mightContain(hl7Id) || (addedDuringRebuild != null && addedDuringRebuild.contains(hl7Id))) {
+            return true;
+        }
+        definiteMisses.increment();
+        return false;
+    }
+
+    /**
+     * add the HL7 id of a saved patient
+     *
+     * @param hl7Id HL7 id to add
+     */
+    public void add(String hl7Id) {
+        if (!enabled || hl7Id == null) {
+            return;
+        }
+        // remember the id for a running rebuild first, so it is either part of the rebuild or added to the new filter
+        Set<String> addedDuringRebuild = idsAddedDuringRebuild;
+        if (addedDuringRebuild != null) {
+            addedDuringRebuild.add(hl7Id);
+        }
+        filter.add(hl7Id);
+    }
+
+    /**
+     * record that the filter let an unknown HL7 id pass
+     */
+    public void recordFalsePositive() {
+        falsePositives.increment();
+    }
+
+    /**
+     * get the observed share of unknown HL7 ids which were not filtered out
+     *
+     * @return false positive rate between 0 and 1
+     */
+    public double getFalsePositiveRate() {
+        double misses = definiteMisses.count() + falsePositives.count();
+        return misses == 0 ? 0 : falsePositives.count() / misses;
+    }
+
+    /**
+     * rebuild the filter from the database; the filter is sized for twice the current number of patients
+     */
+    @Scheduled(fixedDelayString = "${informme.patient.id-filter.rebuild-interval:3600000}", initialDelayString = "${informme.patient.id-filter.rebuild-interval:3600000}")
+    public void rebuild() {
+        if (!enabled) {
+            return;
+        }
+        idsAddedDuringRebuild = ConcurrentHashMap.newKeySet();
+        try {
+            long patientCount = patientRepository.count();
+            BloomFilter newFilter = new BloomFilter(Math.max(expectedIds, patientCount * 2), falsePositiveProbability);
+            transactionTemplate.executeWithoutResult(status -> {
+                try (Stream<String> hl7Ids = patientRepository.streamAllHl7Ids()) {
+                    hl7Ids.forEach(newFilter::add);
+                }
+            });
+            filter = newFilter;
+            idsAddedDuringRebuild.forEach(newFilter::add);
+            log.debug("Rebuilt HL7 id filter with {} ids", newFilter.getElementCount());
+        } finally {
+            idsAddedDuringRebuild = null;
+        }
+    }
+}
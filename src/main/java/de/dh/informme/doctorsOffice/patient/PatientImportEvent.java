@@ -0,0 +1,50 @@
+package de.dh.informme.doctorsOffice.patient;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * progress or failure reported during a bulk import of patients
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class PatientImportEvent {
+
+    /**
+     * kinds of events
+     */
+    public enum Type {
+        PROGRESS, FAILURE, DONE
+    }
+
+    private Type type;
+
+    /**
+     * number of the line in the file, only set for failures
+     */
+    private Long line;
+
+    /**
+     * reason why the line was not imported, only set for failures
+     */
+    private String reason;
+
+    /**
+     * number of rows read so far
+     */
+    private long processed;
+
+    /**
+     * number of patients imported so far
+     */
+    private long imported;
+
+    /**
+     * number of rows which failed so far
+     */
+    private long failed;
+}
@@ -0,0 +1,317 @@
+package de.dh.informme.doctorsOffice.patient;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.function.Consumer;
+
+/**
+ * imports patients from CSV or JSON lines files
+ * <p>
+ * The file is read line by line and saved in chunks, every chunk in its own transaction with batched inserts. Only
+ * one chunk is held in memory, so the memory use does not depend on the size of the file.
+ */
+@Slf4j
+@Service
+public class PatientImportService {
+
+    /**
+     * supported file formats
+     */
+    public enum Format {
+        /**
+         * comma separated values with a header line; the birthday is formatted as dd.MM.yyyy
+         */
+        CSV,
+        /**
+         * one patient as JSON object per line, like the body of POST /patient/create-patient
+         */
+        NDJSON
+    }
+
+    @Autowired
+    private PatientService patientService;
+
+    @Autowired
+    private PatientRepository patientRepository;
+
+    @Autowired
+    private PatientIdFilter patientIdFilter;
+
+    @Autowired
+    private Hl7IdAllocator hl7IdAllocator;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    /**
+     * number of patients saved in one transaction
+     */
+    @Value("${informme.patient.import.chunk-size:500}")
+    private int chunkSize;
+
+    /**
+     * import all patients of a file
+     *
+     * @param reader          content of the file
+     * @param format          format of the file
+     * @param checkDuplicates skip patients whose HL7 id already exists
+     * @param events          receives a progress event after every chunk, a failure event for every row which was
+     *                        not imported and a final event
+     * @return final event with the numbers of read, imported and failed rows
+     * @throws IOException is thrown when the file could not be read
+     */
+    public PatientImportEvent importPatients(Reader reader, Format format, boolean checkDuplicates, Consumer<PatientImportEvent> events) throws IOException {
+        Import patientImport = new Import(checkDuplicates, events);
+        BufferedReader lines = new BufferedReader(reader);
+        List<String> header = null;
+        String line;
+        while ((line = lines.readLine()) != null) {
+            patientImport.lineNumber++;
+            if (line.isBlank()) {
+                continue;
+            }
+            if (format == Format.CSV && header == null) {
+                header = splitCsvLine(line);
+                continue;
+            }
+            patientImport.processed++;
+            try {
+                Patient patient = format == Format.CSV ? parseCsvLine(header, line) : parseJsonLine(line);
+                validate(patient);
+                patientImport.chunk.add(new ImportRow(patientImport.lineNumber, patient));
+            } catch (IllegalArgumentException | ParseException e) {
+                patientImport.fail(patientImport.lineNumber, e.getMessage());
+            } catch (JsonProcessingException e) {
+                patientImport.fail(patientImport.lineNumber, e.getOriginalMessage());
+            }
+            if (patientImport.chunk.size() >= chunkSize) {
+                saveChunk(patientImport);
+            }
+        }
+        saveChunk(patientImport);
+        PatientImportEvent done = patientImport.event(PatientImportEvent.Type.DONE, null, null);
+        events.accept(done);
+        return done;
+    }
+
+    /**
+     * save the rows of the current chunk; if the chunk can not be saved, the rows are saved one by one
+     *
+     * @param patientImport running import
+     */
+    private void saveChunk(Import patientImport) {
+        if (patientImport.chunk.isEmpty()) {
+            return;
+        }
+        List<ImportRow> rows = patientImport.checkDuplicates ? removeDuplicates(patientImport) : patientImport.chunk;
+        for (ImportRow row : rows) {
+            if (row.patient.getHl7Id() == null || row.patient.getHl7Id().isBlank()) {
+                row.patient.setHl7Id(hl7IdAllocator.nextId());
+            }
+        }
+        try {
+            patientService.savePatients(rows.stream().map(row -> row.patient).toList());
+            patientImport.imported += rows.size();
+        } catch (RuntimeException e) {
+            log.debug("Could not save a chunk of the import, saving the rows one by one", e);
+            for (ImportRow row : rows) {
+                // the chunk was rolled back, so nothing of it has been saved
+                row.patient.setPatientId(null);
+                row.patient.setVersion(null);
+                try {
+                    patientService.savePatient(row.patient);
+                    patientImport.imported++;
+                } catch (RuntimeException rowException) {
+                    patientImport.fail(row.lineNumber, "Could not save the patient.");
+                }
+            }
+        }
+        patientImport.chunk.clear();
+        patientImport.events.accept(patientImport.event(PatientImportEvent.Type.PROGRESS, null, null));
+    }
+
+    /**
+     * remove the rows whose HL7 id already exists or appears twice in the chunk
+     *
+     * @param patientImport running import
+     * @return rows to save
+     */
+    private List<ImportRow> removeDuplicates(Import patientImport) {
+        Set<String> knownHl7Ids = new HashSet<>();
+        List<String> candidates = new ArrayList<>();
+        for (ImportRow row : patientImport.chunk) {
+            if (patientIdFilter.mightContain(row.patient.getHl7Id())) {
+                candidates.add(row.patient.getHl7Id());
+            }
+        }
+        if (!candidates.isEmpty()) {
+            knownHl7Ids.addAll(patientRepository.findHl7IdsIn(candidates));
+        }
+        List<ImportRow> rows = new ArrayList<>(patientImport.chunk.size());
+        for (ImportRow row : patientImport.chunk) {
+            String hl7Id = row.patient.getHl7Id();
+            if (hl7Id == null || hl7Id.isBlank()) {
+                rows.add(row);
+            } else if (!knownHl7Ids.add(hl7Id)) {
+                patientImport.fail(row.lineNumber, "A patient with the HL7 id " + hl7Id + " already exists.");
+            } else {
+                rows.add(row);
+            }
+        }
+        return rows;
+    }
+
+    private Patient parseJsonLine(String line) throws JsonProcessingException {
+        Patient patient = objectMapper.readValue(line, Patient.class);
+        // the patientId is always generated
+        patient.setPatientId(null);
+        return patient;
+    }
+
+    private Patient parseCsvLine(List<String> header, String line) throws ParseException {
+        List<String> values = splitCsvLine(line);
+        if (values.size() > header.size()) {
+            throw new IllegalArgumentException("The line has more values than the header.");
+        }
+        Patient patient = new Patient();
+        for (int i = 0; i < values.size(); i++) {
+            String value = values.get(i).isEmpty() ? null : values.get(i);
+            switch (header.get(i).trim().toLowerCase(Locale.ROOT)) {
+                case "hl7id" -> patient.setHl7Id(value);
+                case "firstname" -> patient.setFirstName(value);
+                case "lastname" -> patient.setLastName(value);
+                case "birthday" -> patient.setBirthday(value == null ? null : parseBirthday(value));
+                case "address" -> patient.setAddress(value);
+                case "telephone" -> patient.setTelephone(value);
+                case "email" -> patient.setEmail(value);
+                case "sex" -> patient.setSex(value);
+                default -> throw new IllegalArgumentException("Unknown column " + header.get(i) + ".");
+            }
+        }
+        return patient;
+    }
+
+    /**
+     * parse a birthday like the REST API does
+     *
+     * @param value birthday as dd.MM.yyyy
+     * @return birthday
+     * @throws ParseException is thrown when the birthday has the wrong format
+     */
+    private Date parseBirthday(String value) throws ParseException {
+        SimpleDateFormat formatter = new SimpleDateFormat("dd.MM.yyyy");
+        formatter.setTimeZone(TimeZone.getTimeZone("Europe/Berlin"));
+        formatter.setLenient(false);
+        return formatter.parse(value);
+    }
+
+    private void validate(Patient patient) {
+        if (patient.getFirstName() == null || patient.getLastName() == null || patient.getBirthday() == null) {
+            throw new IllegalArgumentException("First name, last name and birthday are required.");
+        }
+    }
+
+    /**
+     * split a CSV line; values may be quoted with double quotes, a double quote within a quoted value is written
+     * twice. Line breaks within values are not supported.
+     *
+     * @param line CSV line
+     * @return values of the line
+     */
+    static List<String> splitCsvLine(String line) {
+        List<String> values = new ArrayList<>();
+        StringBuilder value = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    value.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    value.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                values.add(value.toString());
+                value.setLength(0);
+            } else {
+                value.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("Unterminated quoted value.");
+        }
+        values.add(value.toString());
+        return values;
+    }
+
+    /**
+     * parsed row which waits to be saved
+     */
+    private static class ImportRow {
+
+        private final long lineNumber;
+
+        private final Patient patient;
+
+        private ImportRow(long lineNumber, Patient patient) {
+            this.lineNumber = lineNumber;
+            this.patient = patient;
+        }
+    }
+
+    /**
+     * state of one running import
+     */
+    private static class Import {
+
+        private final boolean checkDuplicates;
+
+        private final Consumer<PatientImportEvent> events;
+
+        private final List<ImportRow> chunk = new ArrayList<>();
+
+        private long lineNumber = 0;
+
+        private long processed = 0;
+
+        private long imported = 0;
+
+        private long failed = 0;
+
+        private Import(boolean checkDuplicates, Consumer<PatientImportEvent> events) {
+            this.checkDuplicates = checkDuplicates;
+            this.events = events;
+        }
+
+        private void fail(long line, String reason) {
+            failed++;
+            events.accept(event(PatientImportEvent.Type.FAILURE, line, reason));
+        }
+
+        private PatientImportEvent event(PatientImportEvent.Type type, Long line, String reason) {
+            return new PatientImportEvent(type, line, reason, processed, imported, failed);
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package de.dh.informme.doctorsOffice.patient;
+
+import de.dh.informme.application.Internationalization;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.View;
+import org.springframework.web.servlet.ViewResolver;
+import org.springframework.web.servlet.support.RequestContextUtils;
+import org.thymeleaf.ITemplateEngine;
+import org.thymeleaf.context.WebContext;
+import org.thymeleaf.web.servlet.JakartaServletWebApplication;
+import org.unbescape.html.HtmlEscape;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.ResourceBundle;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * renders the patient page from copies which were rendered once per locale
+ * <p>
+ * The template is rendered by Thymeleaf with placeholders instead of the data of a patient, so the layout is decorated
+ * and the messages of the locale are resolved only once. The result is split at the placeholders; a request only
+ * writes the parts and the escaped data of its patient. The template shows "noEntry" instead of a missing telephone
+ * number or email address, so there is one copy for each combination of these two being present or missing. The
+ * output is the same as the one of the Thymeleaf view.
+ */
+@Component
+public class PatientPageView implements View, ViewResolver, Ordered {
+
+    /**
+     * name of the template which is replaced by this view
+     */
+    static final String TEMPLATE = "patient/patient_show_data";
+
+    private static final String CONTENT_TYPE = "text/html;charset=UTF-8";
+
+    private static final Pattern PLACEHOLDER = Pattern.compile("~informme\\.(\\w+)~");
+
+    /**
+     * data of the patient written into the page
+     */
+    enum Field {
+        FIRST_NAME(PatientView::getFirstName),
+        LAST_NAME(PatientView::getLastName),
+        BIRTHDAY(PatientView::getBirthday),
+        ADDRESS(PatientView::getAddress),
+        TELEPHONE(PatientView::getTelephone),
+        EMAIL(PatientView::getEmail);
+
+        private final Function<PatientView, Object> getter;
+
+        Field(Function<PatientView, Object> getter) {
+            this.getter = getter;
+        }
+
+        private String placeholder() {
+            return "~informme." + name() + "~";
+        }
+    }
+
+    @Autowired
+    private ITemplateEngine templateEngine;
+
+    /**
+     * render the patient page from the prerendered copy instead of the Thymeleaf view
+     */
+    @Value("${informme.patient.page-cache.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * pages by the locale of the messages bundle, each indexed by {@link #variant}; the locale of the session can be
+     * set to any value with ?lang=, so it is not used as key
+     */
+    private final Map<Locale, PrerenderedPage[]> pages = new ConcurrentHashMap<>();
+
+    @Override
+    public View resolveViewName(String viewName, Locale locale) {
+        return enabled && TEMPLATE.equals(viewName) ? this : null;
+    }
+
+    @Override
+    public int getOrder() {
+        // before the Thymeleaf view resolver
+        return Ordered.HIGHEST_PRECEDENCE;
+    }
+
+    @Override
+    public String getContentType() {
+        return CONTENT_TYPE;
+    }
+
+    @Override
+    public void render(Map<String, ?> model, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        Locale locale = RequestContextUtils.getLocale(request);
+        PrerenderedPage[] variants = pages.computeIfAbsent(messagesLocale(locale), pageLocale -> new PrerenderedPage[4]);
+        Object attribute = model.get("patient");
+        PatientView patient = attribute instanceof Patient entity ? PatientView.of(entity) : (PatientView) attribute;
+        int variant = variant(patient.getTelephone() != null, patient.getEmail() != null);
+        PrerenderedPage page = variants[variant];
+        if (page == null) {
+            // rendered twice at worst, when two requests need the same new page at once
+            page = prerender(locale, patient.getTelephone() != null, patient.getEmail() != null, request, response);
+            variants[variant] = page;
+        }
+        response.setContentType(CONTENT_TYPE);
+        page.write(response.getWriter(), patient);
+    }
+
+    /**
+     * locale of the messages bundle which is used for the locale; the page only differs by its messages, so all
+     * locales with the same bundle share the pages
+     *
+     * @param locale locale of the request
+     * @return locale of the bundle, {@link Locale#ROOT} for the default messages
+     */
+    static Locale messagesLocale(Locale locale) {
+        return ResourceBundle.getBundle(Internationalization.MESSAGES, locale).getLocale();
+    }
+
+    private static int variant(boolean hasTelephone, boolean hasEmail) {
+        return (hasTelephone ? 2 : 0) + (hasEmail ? 1 : 0);
+    }
+
+    /**
+     * render the template with placeholders and split it at the placeholders
+     *
+     * @param locale       locale of the messages
+     * @param hasTelephone render the page of patients with a telephone number
+     * @param hasEmail     render the page of patients with an email address
+     * @param request      request which is rendered first; only its context path is used
+     * @param response     response of the request
+     * @return page parts
+     */
+    private PrerenderedPage prerender(Locale locale, boolean hasTelephone, boolean hasEmail, HttpServletRequest request, HttpServletResponse response) {
+        // links must not contain the session id of the first request
+        HttpServletResponse withoutSessionIds = new HttpServletResponseWrapper(response) {
+            @Override
+            public String encodeURL(String url) {
+                return url;
+            }
+        };
+        WebContext context = new WebContext(JakartaServletWebApplication.buildApplication(request.getServletContext())
+                .buildExchange(request, withoutSessionIds), locale, Map.of("patient", new Placeholders(hasTelephone, hasEmail)));
+        String html = templateEngine.process(TEMPLATE, context);
+
+        List<String> parts = new ArrayList<>();
+        List<Field> fields = new ArrayList<>();
+        Matcher matcher = PLACEHOLDER.matcher(html);
+        int start = 0;
+        while (matcher.find()) {
+            parts.add(html.substring(start, matcher.start()));
+            fields.add(Field.valueOf(matcher.group(1)));
+            start = matcher.end();
+        }
+        parts.add(html.substring(start));
+        return new PrerenderedPage(parts.toArray(new String[0]), fields.toArray(new Field[0]));
+    }
+
+    /**
+     * patient page of one locale, split at the data of the patient
+     */
+    private static class PrerenderedPage {
+
+        /**
+         * parts of the page; the field i is written between the parts i and i + 1
+         */
+        private final String[] parts;
+
+        private final Field[] fields;
+
+        private PrerenderedPage(String[] parts, Field[] fields) {
+            this.parts = parts;
+            this.fields = fields;
+        }
+
+        private void write(PrintWriter writer, PatientView patient) {
+            for (int i = 0; i < fields.length; i++) {
+                writer.write(parts[i]);
+                Object value = fields[i].getter.apply(patient);
+                if (value != null) {
+                    // th:text escapes like this
+                    writer.write(HtmlEscape.escapeHtml4Xml(value.toString()));
+                }
+            }
+            writer.write(parts[parts.length - 1]);
+        }
+    }
+
+    /**
+     * patient which is rendered into the prerendered page; the template calls its getters
+     */
+    public static class Placeholders {
+
+        private final boolean hasTelephone;
+
+        private final boolean hasEmail;
+
+        private Placeholders(boolean hasTelephone, boolean hasEmail) {
+            this.hasTelephone = hasTelephone;
+            this.hasEmail = hasEmail;
+        }
+
+        public String getFirstName() {
+            return Field.FIRST_NAME.placeholder();
+        }
+
+        public String getLastName() {
+            return Field.LAST_NAME.placeholder();
+        }
+
+        public String getBirthday() {
+            return Field.BIRTHDAY.placeholder();
+        }
+
+        public String getAddress() {
+            return Field.ADDRESS.placeholder();
+        }
+
+        public String getTelephone() {
+            return hasTelephone ? Field.TELEPHONE.placeholder() : null;
+        }
+
+        public String getEmail() {
+            return hasEmail ? Field.EMAIL.placeholder() : null;
+        }
+    }
+}
@@ -1,14 +1,28 @@
 package de.dh.informme.doctorsOffice.patient;
 
+import de.dh.informme.application.ResourceVersion;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 public interface PatientRepository extends JpaRepository<Patient, Long> {
 
+    /**
+     * number of rows fetched at once by {@link #streamAll()}
+     */
+    int EXPORT_FETCH_SIZE = 1000;
+
     /**
      * find a patient by its patientId
      *
@@ -17,6 +31,26 @@ public interface PatientRepository extends JpaRepository<Patient, Long> {
      */
     Optional<Patient> findByPatientId(Long patientId);
 
+    /**
+     * find the data of a patient by its patientId without loading the entity
+     * <p>
+     * The query is the named query Patient.findViewByPatientId. Unlike a query in {@link Query}, it is not parsed
+     * again by Spring Data on every call.
+     *
+     * @param patientId the patient's id
+     * @return data of the found patient
+     */
+    Optional<PatientView> findViewByPatientId(@Param("patientId") Long patientId);
+
+    /**
+     * find the version and the time of the last change of a patient without loading it; the named query
+     * Patient.findVersionByPatientId
+     *
+     * @param patientId the patient's id
+     * @return version of the found patient
+     */
+    Optional<ResourceVersion> findVersionByPatientId(@Param("patientId") Long patientId);
+
     /**
      * find a patient by its HL7 id
      *
@@ -36,10 +70,100 @@ public interface PatientRepository extends JpaRepository<Patient, Long> {
     List<Patient> findByFirstNameAndLastNameAndBirthday(String firstName, String lastName, Date birthday);
 
     /**
-     * find a random Patient object
+     * find all patients with one of the given HL7 ids or with the given first name, last name and birthday
+     *
+     * @param hl7Ids    HL7 ids to look for
+     * @param firstName the patient's first name
+     * @param lastName  the patient's last name
+     * @param birthday  the patient's birthday
+     * @return found patients
+     */
+    @Query("SELECT p FROM Patient p WHERE p.hl7Id IN :hl7Ids OR (p.firstName = :firstName AND p.lastName = :lastName AND p.birthday = :birthday)")
+    List<Patient> findByHl7IdsOrNameAndBirthday(@Param("hl7Ids") Collection<String> hl7Ids, @Param("firstName") String firstName, @Param("lastName") String lastName, @Param("birthday") Date birthday);
+
+    /**
+     * find which of the given HL7 ids belong to a patient
+     *
+     * @param hl7Ids HL7 ids to look for
+     * @return HL7 ids of existing patients
+     */
+    @Query("SELECT p.hl7Id FROM Patient p WHERE p.hl7Id IN :hl7Ids")
+    List<String> findHl7IdsIn(@Param("hl7Ids") Collection<String> hl7Ids);
+
+    /**
+     * stream all patients ordered by their patientId; must be called within a transaction
+     * <p>
+     * The rows are fetched from the database in pages of {@link #EXPORT_FETCH_SIZE} and the patients are loaded
+     * read-only. With MySQL, the fetch size is only used if the connection has "useCursorFetch=true", which is set in
+     * application.properties.
+     *
+     * @return all patients
+     */
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "" + EXPORT_FETCH_SIZE),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "false")
+    })
+    @Query("SELECT p FROM Patient p ORDER BY p.patientId")
+    Stream<Patient> streamAll();
+
+    /**
+     * stream the patientId, first name, last name and birthday of all patients; must be called within a transaction
+     *
+     * @return rows of patientId, first name, last name and birthday
+     */
+    @Query("SELECT p.patientId, p.firstName, p.lastName, p.birthday FROM Patient p")
+    Stream<Object[]> streamNamesAndBirthdays();
+
+    /**
+     * set the demographic fingerprint of a patient without loading it
+     *
+     * @param patientId   the patient's id
+     * @param fingerprint fingerprint of the stored data
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE Patient p SET p.demographicsFingerprint = :fingerprint WHERE p.patientId = :patientId")
+    void updateDemographicsFingerprint(@Param("patientId") Long patientId, @Param("fingerprint") Long fingerprint);
+
+    /**
+     * stream the HL7 ids of all patients; must be called within a transaction
+     *
+     * @return HL7 ids of all patients with an HL7 id
+     */
+    @Query("SELECT p.hl7Id FROM Patient p WHERE p.hl7Id IS NOT NULL")
+    Stream<String> streamAllHl7Ids();
+
+    /**
+     * find HL7 ids which belong to more than one patient; they keep the unique index on the HL7 id from being created
+     *
+     * @return HL7 ids of more than one patient
+     */
+    @Query("SELECT p.hl7Id FROM Patient p WHERE p.hl7Id IS NOT NULL GROUP BY p.hl7Id HAVING COUNT(p) > 1")
+    List<String> findDuplicateHl7Ids();
+
+    /**
+     * find the smallest patientId
+     *
+     * @return smallest patientId or null if there are no patients
+     */
+    @Query("SELECT MIN(p.patientId) FROM Patient p")
+    Long findMinPatientId();
+
+    /**
+     * find the largest patientId
+     *
+     * @return largest patientId or null if there are no patients
+     */
+    @Query("SELECT MAX(p.patientId) FROM Patient p")
+    Long findMaxPatientId();
+
+    /**
+     * find the first patientId which is greater than or equal to the given id
      *
-     * @return random Patient object
+     * @param patientId lower bound
+     * @return found patientId
      */
-    @Query(value = "SELECT * FROM patients ORDER BY RAND() LIMIT 1", nativeQuery = true)
-    Patient findRandom();
+    @Query("SELECT p.patientId FROM Patient p WHERE p.patientId >= :patientId ORDER BY p.patientId ASC LIMIT 1")
+    Optional<Long> findFirstPatientIdFrom(@Param("patientId") Long patientId);
 }
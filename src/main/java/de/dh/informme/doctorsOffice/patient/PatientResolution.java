@@ -0,0 +1,24 @@
+package de.dh.informme.doctorsOffice.patient;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * patients found for the identifiers, name and birthday of a health card
+ */
+@Data
+@AllArgsConstructor
+public class PatientResolution {
+
+    /**
+     * patient with one of the card's HL7 ids, null if there is none
+     */
+    private Patient patientByHl7Id;
+
+    /**
+     * patients with the card's first name, last name and birthday
+     */
+    private List<Patient> patientsByNameAndBirthday;
+}
@@ -1,14 +1,20 @@
 package de.dh.informme.doctorsOffice.patient;
 
 import ca.uhn.hl7v2.HL7Exception;
-import de.dh.informme.hl7Mock.Hl7MockService;
+import de.dh.informme.application.ResourceVersion;
+import de.dh.informme.doctorsOffice.hl7.Hl7ProcessingMetrics;
+import de.dh.informme.doctorsOffice.hl7.Hl7ProcessingMetrics.Stage;
+import de.dh.informme.hl7Mock.Hl7MockWriteBehind;
+import io.micrometer.core.instrument.Timer;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
-import java.util.Random;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
 
 @Service
 public class PatientService {
@@ -16,8 +22,22 @@ public class PatientService {
     @Autowired
     private PatientRepository patientRepository;
 
+    /**
+     * number of random patientIds which are looked up before {@link #getRandomPatientId} takes the next existing one
+     */
+    private static final int RANDOM_PATIENT_ID_TRIES = 16;
+
+    @Autowired
+    private Hl7MockWriteBehind hl7MockWriteBehind;
+
     @Autowired
-    private Hl7MockService hl7MockService;
+    private PatientIdFilter patientIdFilter;
+
+    @Autowired
+    private PatientDuplicateIndex patientDuplicateIndex;
+
+    @Autowired
+    private Hl7ProcessingMetrics hl7ProcessingMetrics;
 
     /**
      * find a patient by its patientId
@@ -29,6 +49,26 @@ public class PatientService {
         return patientRepository.findByPatientId(patientId).orElse(null);
     }
 
+    /**
+     * find the data of a patient by its patientId for showing it; the patient can not be changed through the result
+     *
+     * @param patientId the patient's id
+     * @return data of the found patient
+     */
+    public PatientView getPatientViewById(Long patientId) {
+        return patientRepository.findViewByPatientId(patientId).orElse(null);
+    }
+
+    /**
+     * get the version of a patient without loading the patient
+     *
+     * @param patientId the patient's id
+     * @return version and time of the last change or null if there is no patient with the id
+     */
+    public ResourceVersion getPatientVersion(Long patientId) {
+        return patientRepository.findVersionByPatientId(patientId).orElse(null);
+    }
+
     /**
      * save a patient
      *
@@ -37,12 +77,10 @@ public class PatientService {
      * @return saved patient
      */
     public Patient savePatient(Patient patient, String message) {
-        try {
-            hl7MockService.updateMessage(message, patient.getHl7Id());
-        } catch (HL7Exception e) {
+        if (!updateHl7Mock(message, patient)) {
             return null;
         }
-        return patientRepository.save(patient);
+        return savePatient(patient);
     }
 
     /**
@@ -52,7 +90,19 @@ public class PatientService {
      * @return saved patient
      */
     public Patient savePatient(Patient patient) {
-        return patientRepository.save(patient);
+        return addToIndexes(patientRepository.save(patient));
+    }
+
+    /**
+     * save new patients in one transaction; the inserts are sent in JDBC batches
+     *
+     * @param patients the patients to save
+     * @return saved patients
+     */
+    public List<Patient> savePatients(List<Patient> patients) {
+        List<Patient> savedPatients = patientRepository.saveAll(patients);
+        savedPatients.forEach(this::addToIndexes);
+        return savedPatients;
     }
 
     /**
@@ -62,7 +112,7 @@ public class PatientService {
      * @return updated patient
      */
     public Patient updatePatient(Patient patient) {
-        return patientRepository.saveAndFlush(patient);
+        return addToIndexes(patientRepository.saveAndFlush(patient));
     }
 
     /**
@@ -73,12 +123,22 @@ public class PatientService {
      * @return updated patient
      */
     public Patient updatePatient(Patient patient, String message) {
-        try {
-            hl7MockService.updateMessage(message, patient.getHl7Id());
-        } catch (HL7Exception e) {
+        if (!updateHl7Mock(message, patient)) {
             return null;
         }
-        return patientRepository.saveAndFlush(patient);
+        return updatePatient(patient);
+    }
+
+    /**
+     * store the fingerprint of a patient whose data equals the data of a health card, so the next read of the card
+     * skips the comparison; only needed for patients saved before the fingerprint was introduced
+     *
+     * @param patient     the patient
+     * @param fingerprint fingerprint of the patient's data
+     */
+    public void storeDemographicsFingerprint(Patient patient, long fingerprint) {
+        patientRepository.updateDemographicsFingerprint(patient.getPatientId(), fingerprint);
+        patient.setDemographicsFingerprint(fingerprint);
     }
 
     /**
@@ -88,7 +148,14 @@ public class PatientService {
      * @return found patient
      */
     public Patient getPatientByHl7Id(String hl7Id) {
-        return patientRepository.findByHl7Id(hl7Id).orElse(null);
+        if (!patientIdFilter.mightContain(hl7Id)) {
+            return null;
+        }
+        Patient patient = patientRepository.findByHl7Id(hl7Id).orElse(null);
+        if (patient == null) {
+            patientIdFilter.recordFalsePositive();
+        }
+        return patient;
     }
 
     /**
@@ -103,18 +170,95 @@ public class PatientService {
         return patientRepository.findByFirstNameAndLastNameAndBirthday(firstName, lastName, birthday);
     }
 
+    /**
+     * find patients with a similar name and the same birthday, e.g. "Müller" and "Mueller"
+     * <p>
+     * The candidates are taken from the duplicate index and checked against their current data in the database,
+     * so no query is sent if the index has no candidates.
+     *
+     * @param firstName the patient's first name
+     * @param lastName  the patient's last name
+     * @param birthday  the patient's birthday
+     * @return similar patients
+     */
+    public List<Patient> getSimilarPatients(String firstName, String lastName, Date birthday) {
+        Set<Long> patientIds = patientDuplicateIndex.findSimilarPatientIds(firstName, lastName, birthday);
+        if (patientIds.isEmpty()) {
+            return List.of();
+        }
+        List<Patient> similarPatients = new ArrayList<>();
+        for (Patient candidate : patientRepository.findAllById(patientIds)) {
+            if (patientDuplicateIndex.isSimilar(candidate, firstName, lastName, birthday)) {
+                similarPatients.add(candidate);
+            }
+        }
+        return similarPatients;
+    }
+
+    /**
+     * find the patient of a health card with a single query
+     * <p>
+     * If several HL7 ids belong to a patient, the patient of the last one is returned. HL7 ids which are
+     * definitely unknown are not sent to the database.
+     *
+     * @param hl7Ids    HL7 ids of the health card
+     * @param firstName the patient's first name
+     * @param lastName  the patient's last name
+     * @param birthday  the patient's birthday
+     * @return patient with one of the HL7 ids and patients with the same name and birthday
+     */
+    public PatientResolution resolvePatient(List<String> hl7Ids, String firstName, String lastName, Date birthday) {
+        List<String> knownHl7Ids = new ArrayList<>();
+        for (String hl7Id : hl7Ids) {
+            if (patientIdFilter.mightContain(hl7Id)) {
+                knownHl7Ids.add(hl7Id);
+            }
+        }
+        List<Patient> candidates = patientRepository.findByHl7IdsOrNameAndBirthday(knownHl7Ids, firstName, lastName, birthday);
+
+        Patient patientByHl7Id = null;
+        for (String hl7Id : knownHl7Ids) {
+            Patient match = candidates.stream().filter(candidate -> hl7Id.equals(candidate.getHl7Id())).findFirst().orElse(null);
+            if (match != null) {
+                patientByHl7Id = match;
+            } else {
+                patientIdFilter.recordFalsePositive();
+            }
+        }
+        List<Patient> patientsByNameAndBirthday = new ArrayList<>();
+        for (Patient candidate : candidates) {
+            if (Objects.equals(candidate.getFirstName(), firstName) && Objects.equals(candidate.getLastName(), lastName) && isSameDay(candidate.getBirthday(), birthday)) {
+                patientsByNameAndBirthday.add(candidate);
+            }
+        }
+        return new PatientResolution(patientByHl7Id, patientsByNameAndBirthday);
+    }
+
     /**
      * get a random existing patient
+     * <p>
+     * Random values between the smallest and the largest patientId are chosen until one of them exists, so only index
+     * lookups are needed regardless of the number of patients. Every patient is equally likely, deleted patients and
+     * the unused ids of the pooled id blocks leave gaps though. If none of the tries exists, the next existing
+     * patientId after the last value is returned; it is more likely the longer the gap before it is.
      *
      * @return random patient
      */
     public Long getRandomPatientId() {
-        Patient patient = patientRepository.findRandom();
-        if (patient != null) {
-            return patient.getPatientId();
-        } else {
+        Long minPatientId = patientRepository.findMinPatientId();
+        Long maxPatientId = patientRepository.findMaxPatientId();
+        if (minPatientId == null || maxPatientId == null) {
             return null;
         }
+        long randomPatientId = minPatientId;
+        for (int i = 0; i < RANDOM_PATIENT_ID_TRIES; i++) {
+            randomPatientId = ThreadLocalRandom.current().nextLong(minPatientId, maxPatientId + 1);
+            if (patientRepository.existsById(randomPatientId)) {
+                return randomPatientId;
+            }
+        }
+        // the largest patientId always exists, so there is always a patientId at or after the random value
+        return patientRepository.findFirstPatientIdFrom(randomPatientId).orElse(maxPatientId);
     }
 
     /**
@@ -133,6 +277,9 @@ public class PatientService {
             if (foundPatient == null) {
                 patients = getPatientByNameAndBirthday(patient.getFirstName(), patient.getLastName(), patient.getBirthday());
             }
+            if (foundPatient == null && patients.isEmpty()) {
+                patients = getSimilarPatients(patient.getFirstName(), patient.getLastName(), patient.getBirthday());
+            }
             if (foundPatient != null) {
                 return true;
             } else return !patients.isEmpty();
@@ -141,13 +288,47 @@ public class PatientService {
     }
 
     /**
-     * set a random HL7 id for the given patient
+     * check if two dates are equal; dates read from the database may be java.sql.Date objects
+     *
+     * @param date          first date
+     * @param otherDate     second date
+     * @return true if both dates are null or represent the same point in time
+     */
+    private boolean isSameDay(Date date, Date otherDate) {
+        if (date == null || otherDate == null) {
+            return date == otherDate;
+        }
+        return date.getTime() == otherDate.getTime();
+    }
+
+    /**
+     * add the HL7 id of the patient to the HL7 mock of the message; the mock is written in the background
+     *
+     * @param message HL7 message of the patient
+     * @param patient the patient
+     * @return false if the message could not be parsed
+     */
+    public boolean updateHl7Mock(String message, Patient patient) {
+        Timer.Sample mockUpdate = hl7ProcessingMetrics.start();
+        try {
+            hl7MockWriteBehind.submit(message, patient.getHl7Id());
+            return true;
+        } catch (HL7Exception e) {
+            return false;
+        } finally {
+            hl7ProcessingMetrics.stop(mockUpdate, Stage.MOCK_UPDATE);
+        }
+    }
+
+    /**
+     * add the HL7 id of a saved patient to the id filter and its name and birthday to the duplicate index
      *
-     * @return random HL7 id
+     * @param patient saved patient
+     * @return the saved patient
      */
-    public String getRandomNumberString() {
-        Random rnd = new Random();
-        int number = rnd.nextInt(999999);
-        return String.format("%06d", number);
+    private Patient addToIndexes(Patient patient) {
+        patientIdFilter.add(patient.getHl7Id());
+        patientDuplicateIndex.add(patient);
+        return patient;
     }
 }
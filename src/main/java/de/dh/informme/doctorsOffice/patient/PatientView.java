@@ -0,0 +1,63 @@
+package de.dh.informme.doctorsOffice.patient;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Date;
+
+/**
+ * read-only copy of the data of a {@link Patient} for showing or returning a patient
+ * <p>
+ * It is filled directly from the query result, so Hibernate neither creates a managed entity nor keeps a snapshot
+ * of it for dirty checking. It is serialized like a patient.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class PatientView {
+
+    private Long patientId;
+
+    private String hl7Id;
+
+    private String firstName;
+
+    private String lastName;
+
+    @JsonFormat(pattern="dd.MM.yyyy", timezone = "Europe/Berlin")
+    private Date birthday;
+
+    private String address;
+
+    private String telephone;
+
+    private String email;
+
+    private String sex;
+
+    /**
+     * version of the patient for the ETag
+     */
+    @JsonIgnore
+    private Long version;
+
+    /**
+     * time of the last change for the Last-Modified header
+     */
+    @JsonIgnore
+    private Date lastModified;
+
+    /**
+     * copy the data of a patient
+     *
+     * @param patient loaded patient
+     * @return data of the patient
+     */
+    public static PatientView of(Patient patient) {
+        return new PatientView(patient.getPatientId(), patient.getHl7Id(), patient.getFirstName(), patient.getLastName(), patient.getBirthday(),
+                patient.getAddress(), patient.getTelephone(), patient.getEmail(), patient.getSex(), patient.getVersion(), patient.getLastModified());
+    }
+}
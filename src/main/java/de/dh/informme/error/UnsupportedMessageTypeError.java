@@ -0,0 +1,17 @@
+package de.dh.informme.error;
+
+import lombok.Data;
+
+@Data
+public class UnsupportedMessageTypeError extends Exception {
+
+    /**
+     * message type of MSH-9 as CODE^TRIGGER
+     */
+    private final String messageType;
+
+    public UnsupportedMessageTypeError(String messageType) {
+        super("Messages of the type " + messageType + " are not supported.");
+        this.messageType = messageType;
+    }
+}
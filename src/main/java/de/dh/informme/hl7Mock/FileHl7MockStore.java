@@ -0,0 +1,558 @@
+package de.dh.informme.hl7Mock;
+
+import de.dh.informme.application.ResourceVersion;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * keeps the HL7 mocks in append-only segment files instead of the database
+ * <p>
+ * Every save appends a record with the MSH id, the version, the time of the change and the message to the active
+ * segment; a full segment is sealed and a new one is started. The segments are memory-mapped, so a read slices the
+ * message out of the mapping without a system call. The messages are stored as plain UTF-8, not compressed like in
+ * the database. The MSH ids are found with the {@link Hl7MockFileIndex} outside of the heap.
+ * <p>
+ * The index is not written to disk; on startup it is rebuilt by reading the segments in order, so a later record of
+ * a MSH id replaces the earlier ones. Every record has a checksum, the reading stops at a record which was torn by a
+ * crash and the rest of the last segment is cleared. Sealed segments whose records were mostly replaced are compacted
+ * in the background: their current records are appended to the active segment again and the file is deleted.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "informme.hl7-mock.store", havingValue = "file")
+public class FileHl7MockStore implements Hl7MockStore {
+
+    /*
+     * layout of a record: CRC32C of the rest of the record, length of the MSH id, length of the message, version,
+     * time of the change in milliseconds, MSH id and message as UTF-8
+     */
+    private static final int CRC = 0;
+
+    private static final int KEY_LENGTH = 4;
+
+    private static final int MESSAGE_LENGTH = 8;
+
+    private static final int VERSION = 12;
+
+    private static final int LAST_MODIFIED = 20;
+
+    private static final int HEADER_SIZE = 28;
+
+    private static final Pattern SEGMENT_NAME = Pattern.compile("(\\d{8})\\.segment");
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    /**
+     * directory of the segment files
+     */
+    @Value("${informme.hl7-mock.file.directory:hl7-mocks}")
+    private String directory;
+
+    /**
+     * size of a segment file in bytes; a message has to fit into one segment
+     */
+    @Value("${informme.hl7-mock.file.segment-size:67108864}")
+    private int segmentSize;
+
+    /**
+     * share of replaced records from which a sealed segment is compacted
+     */
+    @Value("${informme.hl7-mock.file.compaction-threshold:0.5}")
+    private double compactionThreshold;
+
+    /**
+     * write the records of every save to the disk before returning; otherwise only a crash of the process is safe
+     */
+    @Value("${informme.hl7-mock.file.force:false}")
+    private boolean force;
+
+    /**
+     * reads share the lock, saves and the compaction of a segment hold it exclusively
+     */
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * segments by id, guarded by the lock
+     */
+    private final Map<Integer, Segment> segments = new HashMap<>();
+
+    /**
+     * guarded by the lock
+     */
+    private Hl7MockFileIndex index;
+
+    /**
+     * segment which new records are appended to, the one with the highest id; guarded by the lock
+     */
+    private Segment active;
+
+    private Counter compactedSegments;
+
+    /**
+     * map the segment files and rebuild the index
+     *
+     * @throws IOException is thrown when the directory or a segment could not be opened
+     */
+    @PostConstruct
+    public void open() throws IOException {
+        long start = System.nanoTime();
+        Path path = Path.of(directory);
+        Files.createDirectories(path);
+        List<Path> files;
+        try (Stream<Path> list = Files.list(path)) {
+            files = list.filter(file -> SEGMENT_NAME.matcher(file.getFileName().toString()).matches()).sorted().toList();
+        }
+        index = new Hl7MockFileIndex(1024);
+        for (Path file : files) {
+            Matcher name = SEGMENT_NAME.matcher(file.getFileName().toString());
+            name.matches();
+            Segment segment = map(Integer.parseInt(name.group(1)), file, false);
+            segments.put(segment.id, segment);
+            recover(segment);
+            active = segment;
+        }
+        if (active == null) {
+            active = createSegment(1);
+        } else {
+            // a crash may have left parts of records behind the last complete one
+            clear(active.buffer, active.writePosition);
+        }
+        Gauge.builder("informme.hl7-mock.file.messages", this, FileHl7MockStore::getMessageCount)
+                .description("HL7 messages in the segment files")
+                .register(meterRegistry);
+        Gauge.builder("informme.hl7-mock.file.segments", this, FileHl7MockStore::getSegmentCount)
+                .description("segment files of the HL7 messages")
+                .register(meterRegistry);
+        compactedSegments = meterRegistry.counter("informme.hl7-mock.file.compacted");
+        log.info("Read {} HL7 mocks from {} segments in {} ms", index.size(), segments.size(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    /**
+     * write the active segment to the disk
+     */
+    @PreDestroy
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            active.buffer.force();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Hl7Mock findByMshId(String mshId) {
+        ByteBuffer key = ByteBuffer.wrap(mshId.getBytes(StandardCharsets.UTF_8));
+        lock.readLock().lock();
+        try {
+            int slot = find(key.hashCode(), key);
+            if (slot < 0) {
+                return null;
+            }
+            ByteBuffer buffer = segments.get(index.segment(slot)).buffer;
+            int offset = index.offset(slot);
+            byte[] message = new byte[buffer.getInt(offset + MESSAGE_LENGTH)];
+            buffer.get(offset + HEADER_SIZE + buffer.getInt(offset + KEY_LENGTH), message);
+            Hl7Mock hl7Mock = new Hl7Mock(mshId, new String(message, StandardCharsets.UTF_8));
+            hl7Mock.setVersion(buffer.getLong(offset + VERSION));
+            hl7Mock.setLastModified(new Date(buffer.getLong(offset + LAST_MODIFIED)));
+            return hl7Mock;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public ResourceVersion findVersionByMshId(String mshId) {
+        ByteBuffer key = ByteBuffer.wrap(mshId.getBytes(StandardCharsets.UTF_8));
+        lock.readLock().lock();
+        try {
+            int slot = find(key.hashCode(), key);
+            if (slot < 0) {
+                return null;
+            }
+            ByteBuffer buffer = segments.get(index.segment(slot)).buffer;
+            int offset = index.offset(slot);
+            return new ResourceVersion(buffer.getLong(offset + VERSION), new Date(buffer.getLong(offset + LAST_MODIFIED)));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * append the messages to the active segment; the version of a replaced message is increased by one
+     *
+     * @param hl7Mocks HL7 messages with distinct MSH ids
+     * @return MSH ids of the new messages
+     * @throws IllegalArgumentException is thrown before anything is written when a message does not fit into a segment
+     */
+    @Override
+    public List<String> saveAll(Collection<Hl7Mock> hl7Mocks) {
+        List<byte[]> keys = new ArrayList<>(hl7Mocks.size());
+        List<byte[]> messages = new ArrayList<>(hl7Mocks.size());
+        for (Hl7Mock hl7Mock : hl7Mocks) {
+            byte[] key = hl7Mock.getMshId().getBytes(StandardCharsets.UTF_8);
+            byte[] message = hl7Mock.getMessage().getBytes(StandardCharsets.UTF_8);
+            if (key.length == 0 || (long) HEADER_SIZE + key.length + message.length > segmentSize) {
+                throw new IllegalArgumentException("The HL7 message " + hl7Mock.getMshId() + " can not be stored in a segment.");
+            }
+            keys.add(key);
+            messages.add(message);
+        }
+        List<String> newMshIds = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        lock.writeLock().lock();
+        try {
+            Segment firstSegment = active;
+            int firstOffset = active.writePosition;
+            int i = 0;
+            for (Hl7Mock hl7Mock : hl7Mocks) {
+                byte[] key = keys.get(i);
+                byte[] message = messages.get(i++);
+                ByteBuffer keyBuffer = ByteBuffer.wrap(key);
+                int hash = keyBuffer.hashCode();
+                int slot = find(hash, keyBuffer);
+                long version = slot < 0 ? 0 : segments.get(index.segment(slot)).buffer.getLong(index.offset(slot) + VERSION) + 1;
+
+                int length = HEADER_SIZE + key.length + message.length;
+                int offset = reserve(length);
+                MappedByteBuffer buffer = active.buffer;
+                buffer.putInt(offset + KEY_LENGTH, key.length);
+                buffer.putInt(offset + MESSAGE_LENGTH, message.length);
+                buffer.putLong(offset + VERSION, version);
+                buffer.putLong(offset + LAST_MODIFIED, now);
+                buffer.put(offset + HEADER_SIZE, key);
+                buffer.put(offset + HEADER_SIZE + key.length, message);
+                // the checksum comes last, a record is only valid when it was written completely
+                buffer.putInt(offset + CRC, checksum(buffer, offset, length));
+                active.writePosition += length;
+                active.liveBytes += length;
+
+                if (slot < 0) {
+                    index.insert(hash, active.id, offset, length);
+                    newMshIds.add(hl7Mock.getMshId());
+                } else {
+                    segments.get(index.segment(slot)).liveBytes -= index.length(slot);
+                    index.update(slot, active.id, offset, length);
+                }
+                hl7Mock.setVersion(version);
+                hl7Mock.setLastModified(new Date(now));
+            }
+            if (force) {
+                // a segment which was filled in between has been forced when the next one was started
+                int from = active == firstSegment ? firstOffset : 0;
+                active.buffer.force(from, active.writePosition - from);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return newMshIds;
+    }
+
+    /**
+     * pass the MSH ids to an action; they are read under the lock, the action is called after releasing it
+     *
+     * @param action receives the MSH ids
+     */
+    @Override
+    public void forEachMshId(Consumer<String> action) {
+        List<String> mshIds;
+        lock.readLock().lock();
+        try {
+            mshIds = new ArrayList<>(index.size());
+            index.forEach((segment, offset) -> {
+                ByteBuffer buffer = segments.get(segment).buffer;
+                byte[] key = new byte[buffer.getInt(offset + KEY_LENGTH)];
+                buffer.get(offset + HEADER_SIZE, key);
+                mshIds.add(new String(key, StandardCharsets.UTF_8));
+            });
+        } finally {
+            lock.readLock().unlock();
+        }
+        mshIds.forEach(action);
+    }
+
+    /**
+     * compact the sealed segments in which at least the compaction threshold of the bytes belong to replaced records,
+     * one segment at a time
+     */
+    @Scheduled(fixedDelayString = "${informme.hl7-mock.file.compaction-interval:600000}", initialDelayString = "${informme.hl7-mock.file.compaction-interval:600000}")
+    public void compact() {
+        List<Integer> candidates;
+        lock.readLock().lock();
+        try {
+            candidates = segments.values().stream()
+                    .filter(segment -> segment != active && segment.liveBytes <= segment.writePosition * (1 - compactionThreshold))
+                    .map(segment -> segment.id)
+                    .sorted()
+                    .toList();
+        } finally {
+            lock.readLock().unlock();
+        }
+        for (int id : candidates) {
+            lock.writeLock().lock();
+            try {
+                Segment segment = segments.get(id);
+                if (segment != null && segment != active) {
+                    compact(segment);
+                }
+            } catch (IOException | UncheckedIOException e) {
+                log.error("Could not compact the HL7 mock segment {}", id, e);
+                return;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * get the number of stored messages
+     *
+     * @return number of MSH ids
+     */
+    public int getMessageCount() {
+        lock.readLock().lock();
+        try {
+            return index.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * get the number of segment files
+     *
+     * @return number of segments
+     */
+    public int getSegmentCount() {
+        lock.readLock().lock();
+        try {
+            return segments.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * append the current records of a sealed segment to the active segment and delete it; called with the write lock
+     *
+     * @param segment sealed segment
+     * @throws IOException is thrown when the segment could not be deleted
+     */
+    private void compact(Segment segment) throws IOException {
+        ByteBuffer buffer = segment.buffer;
+        int moved = 0;
+        int position = 0;
+        while (position < segment.writePosition) {
+            int length = HEADER_SIZE + buffer.getInt(position + KEY_LENGTH) + buffer.getInt(position + MESSAGE_LENGTH);
+            ByteBuffer key = key(buffer, position);
+            int slot = find(key.hashCode(), key);
+            if (slot >= 0 && index.segment(slot) == segment.id && index.offset(slot) == position) {
+                // the record is copied with its checksum, version and time of the change
+                int offset = reserve(length);
+                active.buffer.put(offset, buffer, position, length);
+                active.writePosition += length;
+                active.liveBytes += length;
+                index.update(slot, active.id, offset, length);
+                moved++;
+            }
+            position += length;
+        }
+        // the copies must be on the disk before the originals are gone
+        active.buffer.force();
+        segments.remove(segment.id);
+        Files.deleteIfExists(segment.path);
+        compactedSegments.increment();
+        log.debug("Compacted the HL7 mock segment {}, moved {} records", segment.id, moved);
+    }
+
+    /**
+     * find the slot of a MSH id; called with the lock
+     *
+     * @param hash hash of the MSH id
+     * @param key  MSH id as UTF-8
+     * @return slot or -1 if the MSH id is unknown
+     */
+    private int find(int hash, ByteBuffer key) {
+        return index.find(hash, (segment, offset) -> {
+            ByteBuffer buffer = segments.get(segment).buffer;
+            int keyLength = buffer.getInt(offset + KEY_LENGTH);
+            return keyLength == key.remaining() && buffer.slice(offset + HEADER_SIZE, keyLength).equals(key);
+        });
+    }
+
+    /**
+     * get room for a record in the active segment, starting a new segment if it is full; called with the write lock
+     *
+     * @param length length of the record
+     * @return offset of the record in the active segment
+     */
+    private int reserve(int length) {
+        if (active.writePosition + length > active.buffer.capacity()) {
+            // sealed segments are always on the disk, so a crash can only tear the records of the active one
+            active.buffer.force();
+            try {
+                active = createSegment(active.id + 1);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not create a new HL7 mock segment", e);
+            }
+        }
+        return active.writePosition;
+    }
+
+    /**
+     * read the records of a segment into the index and find the end of the last complete record
+     *
+     * @param segment segment which has been added to the segments
+     */
+    private void recover(Segment segment) {
+        ByteBuffer buffer = segment.buffer;
+        int position = 0;
+        int length;
+        while ((length = validRecordLength(buffer, position)) > 0) {
+            ByteBuffer key = key(buffer, position);
+            int hash = key.hashCode();
+            int slot = find(hash, key);
+            if (slot < 0) {
+                index.insert(hash, segment.id, position, length);
+            } else {
+                segments.get(index.segment(slot)).liveBytes -= index.length(slot);
+                index.update(slot, segment.id, position, length);
+            }
+            segment.liveBytes += length;
+            position += length;
+        }
+        segment.writePosition = position;
+        if (position + HEADER_SIZE <= buffer.capacity() && buffer.getInt(position + KEY_LENGTH) != 0) {
+            log.warn("Ignoring an incomplete record at offset {} of the HL7 mock segment {}", position, segment.id);
+        }
+    }
+
+    private Segment createSegment(int id) throws IOException {
+        Segment segment = map(id, Path.of(directory, String.format("%08d.segment", id)), true);
+        segments.put(id, segment);
+        return segment;
+    }
+
+    private Segment map(int id, Path path, boolean create) throws IOException {
+        try (FileChannel channel = create
+                ? FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)
+                : FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // the mapping stays valid after the channel is closed
+            return new Segment(id, path, channel.map(FileChannel.MapMode.READ_WRITE, 0, create ? segmentSize : channel.size()));
+        }
+    }
+
+    /**
+     * get the MSH id of a record without copying it
+     *
+     * @param buffer segment
+     * @param offset offset of the record
+     * @return MSH id as UTF-8
+     */
+    private static ByteBuffer key(ByteBuffer buffer, int offset) {
+        return buffer.slice(offset + HEADER_SIZE, buffer.getInt(offset + KEY_LENGTH));
+    }
+
+    /**
+     * check the record at a position
+     *
+     * @param buffer segment
+     * @param offset offset of the record
+     * @return length of the record or -1 if there is no complete record at the position
+     */
+    private static int validRecordLength(ByteBuffer buffer, int offset) {
+        if (offset + HEADER_SIZE > buffer.capacity()) {
+            return -1;
+        }
+        int keyLength = buffer.getInt(offset + KEY_LENGTH);
+        int messageLength = buffer.getInt(offset + MESSAGE_LENGTH);
+        if (keyLength <= 0 || messageLength < 0 || (long) offset + HEADER_SIZE + keyLength + messageLength > buffer.capacity()) {
+            return -1;
+        }
+        int length = HEADER_SIZE + keyLength + messageLength;
+        return buffer.getInt(offset + CRC) == checksum(buffer, offset, length) ? length : -1;
+    }
+
+    private static int checksum(ByteBuffer buffer, int offset, int length) {
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.slice(offset + KEY_LENGTH, length - KEY_LENGTH));
+        return (int) crc.getValue();
+    }
+
+    /**
+     * overwrite the rest of a segment with zeros
+     *
+     * @param buffer segment
+     * @param from   first byte to clear
+     */
+    private static void clear(MappedByteBuffer buffer, int from) {
+        for (int position = from; position < buffer.capacity(); position++) {
+            if (buffer.get(position) != 0) {
+                buffer.put(position, (byte) 0);
+            }
+        }
+    }
+
+    /**
+     * memory-mapped segment file
+     */
+    private static final class Segment {
+
+        private final int id;
+
+        private final Path path;
+
+        private final MappedByteBuffer buffer;
+
+        /**
+         * end of the last complete record, new records are appended here
+         */
+        private int writePosition = 0;
+
+        /**
+         * bytes of the records which are the current record of their MSH id
+         */
+        private long liveBytes = 0;
+
+        private Segment(int id, Path path, MappedByteBuffer buffer) {
+            this.id = id;
+            this.path = path;
+            this.buffer = buffer;
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package de.dh.informme.hl7Mock;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * storage format of compressed HL7 messages
+ * <p>
+ * A compressed message is stored as {@link #PREFIX} followed by the Base64 encoded, deflated UTF-8 bytes of the
+ * message. The deflater is primed with a dictionary of the segments and values which appear in the messages of the
+ * card readers, so even short messages shrink. Values without the prefix are plain messages saved before the
+ * compression was introduced. The number in the prefix identifies the dictionary; a changed dictionary needs a new
+ * prefix, rows with the old prefix must stay readable.
+ */
+public final class Hl7MessageCompression {
+
+    /**
+     * marks a compressed message; a HL7 message always starts with "MSH" or a batch header
+     */
+    public static final String PREFIX = "~Z1:";
+
+    /**
+     * common parts of the messages; deflate finds matches at the end of the dictionary with the shortest distances,
+     * so the most frequent parts come last
+     */
+    private static final byte[] DICTIONARY = ("Hospital^MR|Praxis Digital Health|Digital Health Praxis|Dr.^MD|" +
+            "^NET^Internet^|^WPN^PH^|^PRN^PH^|^^^Herr||^^^Frau||Deutschland||@mail.de^49^|@gmail.com^49^|" +
+            "ACK|MSA|AA|ADT^A08^ADT_A01|ADT^A31^ADT_A05|ADT^A28^ADT_A05|ADT^A04^ADT_A01|" +
+            "|||||\rPV1|1|O|\rPV1|1|I|2000^2050^01||||||||||||||||||||||||||||||||" +
+            "|P|2.6\rEVN|A01|20240104|||\rPID|1||^^^Praxis Digital Health||19900101|M|||^^^^^Deutschland||" +
+            "MSH|^~\\&|InformMe|InformMe|InformMe|InformMe|2024||ADT^A01^ADT_A01|" +
+            "MSH|^~\\&|CardReader|Praxis|InformMe|Praxis|2024||ADT^A01|").getBytes(StandardCharsets.UTF_8);
+
+    private Hl7MessageCompression() {
+    }
+
+    /**
+     * check whether a stored value is compressed
+     *
+     * @param value stored value
+     * @return true if the value has to be decompressed
+     */
+    public static boolean isCompressed(String value) {
+        return value != null && value.startsWith(PREFIX);
+    }
+
+    /**
+     * compress a HL7 message
+     *
+     * @param message HL7 message
+     * @return compressed message
+     */
+    public static String compress(String message) {
+        if (message == null || isCompressed(message)) {
+            return message;
+        }
+        byte[] input = message.getBytes(StandardCharsets.UTF_8);
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        try {
+            deflater.setDictionary(DICTIONARY);
+            deflater.setInput(input);
+            deflater.finish();
+            ByteArrayOutputStream output = new ByteArrayOutputStream(input.length / 2 + 16);
+            byte[] buffer = new byte[1024];
+            while (!deflater.finished()) {
+                int length = deflater.deflate(buffer);
+                output.write(buffer, 0, length);
+            }
+            return PREFIX + Base64.getEncoder().encodeToString(output.toByteArray());
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * decompress a stored value; plain messages are returned unchanged
+     *
+     * @param value stored value
+     * @return HL7 message
+     * @throws IllegalArgumentException is thrown when the value is marked as compressed but can not be decompressed
+     */
+    public static String decompress(String value) {
+        if (!isCompressed(value)) {
+            return value;
+        }
+        byte[] input = Base64.getDecoder().decode(value.substring(PREFIX.length()));
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setDictionary(DICTIONARY);
+            inflater.setInput(input);
+            ByteArrayOutputStream output = new ByteArrayOutputStream(input.length * 4);
+            byte[] buffer = new byte[1024];
+            while (!inflater.finished()) {
+                int length = inflater.inflate(buffer);
+                if (length == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IllegalArgumentException("The compressed HL7 message is truncated.");
+                }
+                output.write(buffer, 0, length);
+            }
+            return output.toString(StandardCharsets.UTF_8);
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException("The compressed HL7 message is corrupt.", e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
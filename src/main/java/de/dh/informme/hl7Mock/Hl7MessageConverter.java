@@ -0,0 +1,40 @@
+package de.dh.informme.hl7Mock;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * stores HL7 messages compressed, see {@link Hl7MessageCompression}
+ * <p>
+ * Messages are always decompressed when they are read, so plain rows and compressed rows can be mixed. With
+ * compression disabled, new messages are stored plain; this is needed while instances without the compression
+ * still read the same database.
+ */
+@Component
+@Converter
+public class Hl7MessageConverter implements AttributeConverter<String, String> {
+
+    @Value("${informme.hl7-mock.compression.enabled:true}")
+    private boolean enabled = true;
+
+    @Override
+    public String convertToDatabaseColumn(String message) {
+        return enabled ? Hl7MessageCompression.compress(message) : message;
+    }
+
+    @Override
+    public String convertToEntityAttribute(String value) {
+        return Hl7MessageCompression.decompress(value);
+    }
+
+    /**
+     * check whether new messages are stored compressed
+     *
+     * @return true if the compression is enabled
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+}
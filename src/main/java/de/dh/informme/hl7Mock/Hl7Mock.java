@@ -1,22 +1,51 @@
 package de.dh.informme.hl7Mock;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.Column;
+import jakarta.persistence.Convert;
 import jakarta.persistence.Entity;
 import jakarta.persistence.Id;
+import jakarta.persistence.NamedQuery;
 import jakarta.persistence.Table;
-import lombok.AllArgsConstructor;
+import jakarta.persistence.Version;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.ColumnDefault;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import java.util.Date;
 
 @Entity
 @Table(name="hl7_mocks")
+@NamedQuery(name = "Hl7Mock.findVersionByMshId", query = "SELECT new de.dh.informme.application.ResourceVersion(h.version, h.lastModified) "
+        + "FROM Hl7Mock h WHERE h.mshId = :mshId")
 @Data
-@AllArgsConstructor
 @NoArgsConstructor
 public class Hl7Mock {
     @Id
     private String mshId;
 
     @Column(columnDefinition = "LONGTEXT")
+    @Convert(converter = Hl7MessageConverter.class)
     private String message;
+
+    /**
+     * version for optimistic locking and the ETag of the message; rows saved before it was introduced start with 0
+     */
+    @Version
+    @ColumnDefault("0")
+    @JsonIgnore
+    private Long version;
+
+    /**
+     * time of the last insert or update
+     */
+    @UpdateTimestamp
+    @JsonIgnore
+    private Date lastModified;
+
+    public Hl7Mock(String mshId, String message) {
+        this.mshId = mshId;
+        this.message = message;
+    }
 }
@@ -0,0 +1,83 @@
+package de.dh.informme.hl7Mock;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * compresses the HL7 messages which were saved before the compression was introduced
+ * <p>
+ * The rows are read in batches ordered by their MSH id. A row is only overwritten while it is still plain, so a
+ * message which was updated in between keeps its new content.
+ */
+@Slf4j
+@Component
+public class Hl7MockCompressionMigration {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private Hl7MessageConverter hl7MessageConverter;
+
+    /**
+     * number of rows compressed in one transaction
+     */
+    @Value("${informme.hl7-mock.compression.migration-batch-size:500}")
+    private int batchSize;
+
+    private final Counter migratedRows;
+
+    /**
+     * set when all rows were compressed; new plain rows are not written while the compression is enabled
+     */
+    private volatile boolean finished = false;
+
+    public Hl7MockCompressionMigration(MeterRegistry meterRegistry) {
+        this.migratedRows = meterRegistry.counter("informme.hl7-mock.compression.migrated");
+    }
+
+    @Scheduled(fixedDelayString = "${informme.hl7-mock.compression.migration-interval:600000}", initialDelayString = "${informme.hl7-mock.compression.migration-delay:60000}")
+    public void migrate() {
+        if (finished || !hl7MessageConverter.isEnabled()) {
+            return;
+        }
+        String lastMshId = "";
+        long migrated = 0;
+        int rows;
+        do {
+            List<Object[]> batch = new ArrayList<>();
+            String after = lastMshId;
+            jdbcTemplate.query("SELECT msh_id, message FROM hl7_mocks WHERE msh_id > ? AND message NOT LIKE ? ORDER BY msh_id LIMIT ?",
+                    resultSet -> {
+                        String message = resultSet.getString(2);
+                        batch.add(new Object[]{Hl7MessageCompression.compress(message), resultSet.getString(1)});
+                    },
+                    after, Hl7MessageCompression.PREFIX + "%", batchSize);
+            rows = batch.size();
+            if (rows > 0) {
+                transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(
+                        "UPDATE hl7_mocks SET message = ? WHERE msh_id = ? AND message NOT LIKE '" + Hl7MessageCompression.PREFIX + "%'", batch));
+                lastMshId = (String) batch.get(rows - 1)[1];
+                migrated += rows;
+                migratedRows.increment(rows);
+            }
+        } while (rows == batchSize);
+        if (migrated > 0) {
+            log.info("Compressed {} HL7 messages", migrated);
+        }
+        finished = true;
+    }
+}
@@ -1,5 +1,6 @@
 package de.dh.informme.hl7Mock;
 
+import de.dh.informme.application.ResourceVersion;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
@@ -7,6 +8,7 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 
 @Controller
 @RestController
@@ -28,15 +30,27 @@ public class Hl7MockController {
 
     /**
      * get request at "/hl7-mock/{id}"
+     * <p>
+     * The response has an ETag and a Last-Modified header. Requests with a matching If-None-Match or
+     * If-Modified-Since header are answered with 304 Not Modified without loading the message.
      *
-     * @param id   id of the searched HL7 message
-     * @return ResponseEntity with a HL7 message or with an error message
+     * @param id      id of the searched HL7 message
+     * @param request request with the conditional headers
+     * @return ResponseEntity with a HL7 message or with an error message, null if the message was not modified
      */
     @GetMapping("/{id}")
-    public ResponseEntity<?> getById(@PathVariable(value = "id") String id) {
+    public ResponseEntity<?> getById(@PathVariable(value = "id") String id, WebRequest request) {
+        ResourceVersion version = hl7MockService.getVersionByMshId(id);
+        if (version != null && request.checkNotModified(ResourceVersion.etag(version.getVersion()), ResourceVersion.lastModifiedMillis(version.getLastModified()))) {
+            return null;
+        }
         Hl7Mock hl7Mock = hl7MockService.getByMshId(id);
         if (hl7Mock != null) {
-            return ResponseEntity.ok().body(hl7Mock.getMessage());
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok().eTag(ResourceVersion.etag(hl7Mock.getVersion()));
+            if (hl7Mock.getLastModified() != null) {
+                response.lastModified(hl7Mock.getLastModified().getTime());
+            }
+            return response.body(hl7Mock.getMessage());
         } else {
             return ResponseEntity.badRequest().body("Patient existiert nicht.");
         }
@@ -0,0 +1,208 @@
+package de.dh.informme.hl7Mock;
+
+import java.nio.ByteBuffer;
+
+/**
+ * hash table from MSH id to the record of the message in a segment of the {@link FileHl7MockStore}
+ * <p>
+ * The slots are held in a direct buffer outside of the heap, 16 bytes each: the hash of the MSH id and the segment,
+ * offset and length of the record. The MSH ids themselves are not held; a slot with the same hash is compared with
+ * the MSH id in the record. Collisions are resolved by linear probing, entries are never removed. Not thread-safe.
+ */
+final class Hl7MockFileIndex {
+
+    private static final int SLOT_SIZE = 16;
+
+    private static final int HASH = 0;
+
+    /**
+     * id of the segment, 0 marks an empty slot
+     */
+    private static final int SEGMENT = 4;
+
+    private static final int OFFSET = 8;
+
+    private static final int LENGTH = 12;
+
+    /**
+     * the table grows when it is filled to this share
+     */
+    private static final double MAX_LOAD = 0.7;
+
+    /**
+     * compares the MSH id of a lookup with the MSH id of a record
+     */
+    interface KeyMatcher {
+
+        /**
+         * check if the record at a position has the searched MSH id
+         *
+         * @param segment id of the segment
+         * @param offset  offset of the record in the segment
+         * @return true if the record has the searched MSH id
+         */
+        boolean matches(int segment, int offset);
+    }
+
+    /**
+     * receives the positions of the records in the index
+     */
+    interface RecordAction {
+
+        /**
+         * act on a record
+         *
+         * @param segment id of the segment
+         * @param offset  offset of the record in the segment
+         */
+        void accept(int segment, int offset);
+    }
+
+    private ByteBuffer slots;
+
+    /**
+     * number of slots, a power of two
+     */
+    private int capacity;
+
+    private int size = 0;
+
+    /**
+     * create an empty index
+     *
+     * @param initialCapacity expected number of MSH ids
+     */
+    Hl7MockFileIndex(int initialCapacity) {
+        capacity = Integer.highestOneBit(Math.max(16, (int) (initialCapacity / MAX_LOAD)) - 1) << 1;
+        slots = ByteBuffer.allocateDirect(capacity * SLOT_SIZE);
+    }
+
+    /**
+     * find the slot of a MSH id
+     *
+     * @param hash    hash of the MSH id
+     * @param matcher compares the MSH id with the records of slots with the same hash
+     * @return slot or -1 if the MSH id is not in the index
+     */
+    int find(int hash, KeyMatcher matcher) {
+        int mask = capacity - 1;
+        for (int slot = spread(hash) & mask; ; slot = (slot + 1) & mask) {
+            int position = slot * SLOT_SIZE;
+            int segment = slots.getInt(position + SEGMENT);
+            if (segment == 0) {
+                return -1;
+            }
+            if (slots.getInt(position + HASH) == hash && matcher.matches(segment, slots.getInt(position + OFFSET))) {
+                return slot;
+            }
+        }
+    }
+
+    /**
+     * add a MSH id which is not in the index yet
+     *
+     * @param hash    hash of the MSH id
+     * @param segment id of the segment of the record, greater than 0
+     * @param offset  offset of the record in the segment
+     * @param length  length of the record
+     */
+    void insert(int hash, int segment, int offset, int length) {
+        if (size + 1 > capacity * MAX_LOAD) {
+            grow();
+        }
+        write(slots, capacity, hash, segment, offset, length);
+        size++;
+    }
+
+    /**
+     * point a slot to the new record of its MSH id
+     *
+     * @param slot    slot returned by {@link #find}
+     * @param segment id of the segment of the record
+     * @param offset  offset of the record in the segment
+     * @param length  length of the record
+     */
+    void update(int slot, int segment, int offset, int length) {
+        int position = slot * SLOT_SIZE;
+        slots.putInt(position + SEGMENT, segment);
+        slots.putInt(position + OFFSET, offset);
+        slots.putInt(position + LENGTH, length);
+    }
+
+    int segment(int slot) {
+        return slots.getInt(slot * SLOT_SIZE + SEGMENT);
+    }
+
+    int offset(int slot) {
+        return slots.getInt(slot * SLOT_SIZE + OFFSET);
+    }
+
+    int length(int slot) {
+        return slots.getInt(slot * SLOT_SIZE + LENGTH);
+    }
+
+    /**
+     * get the number of MSH ids
+     *
+     * @return number of entries
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * pass the positions of all records in the index to an action
+     *
+     * @param action receives the segment and the offset of every record
+     */
+    void forEach(RecordAction action) {
+        for (int slot = 0; slot < capacity; slot++) {
+            int segment = segment(slot);
+            if (segment != 0) {
+                action.accept(segment, offset(slot));
+            }
+        }
+    }
+
+    /**
+     * double the number of slots; the entries are placed by their stored hash, so no record is read
+     */
+    private void grow() {
+        int newCapacity = capacity * 2;
+        ByteBuffer newSlots = ByteBuffer.allocateDirect(newCapacity * SLOT_SIZE);
+        for (int slot = 0; slot < capacity; slot++) {
+            int position = slot * SLOT_SIZE;
+            int segment = slots.getInt(position + SEGMENT);
+            if (segment != 0) {
+                write(newSlots, newCapacity, slots.getInt(position + HASH), segment, slots.getInt(position + OFFSET),
+                        slots.getInt(position + LENGTH));
+            }
+        }
+        slots = newSlots;
+        capacity = newCapacity;
+    }
+
+    private static void write(ByteBuffer slots, int capacity, int hash, int segment, int offset, int length) {
+        int mask = capacity - 1;
+        int slot = spread(hash) & mask;
+        while (slots.getInt(slot * SLOT_SIZE + SEGMENT) != 0) {
+            slot = (slot + 1) & mask;
+        }
+        int position = slot * SLOT_SIZE;
+        slots.putInt(position + HASH, hash);
+        slots.putInt(position + SEGMENT, segment);
+        slots.putInt(position + OFFSET, offset);
+        slots.putInt(position + LENGTH, length);
+    }
+
+    /**
+     * spread the bits of the hash, whose low bits are similar for MSH ids which only differ at the end
+     *
+     * @param hash hash of the MSH id
+     * @return mixed hash
+     */
+    private static int spread(int hash) {
+        int mixed = hash * 0x9E3779B9;
+        return mixed ^ (mixed >>> 16);
+    }
+}
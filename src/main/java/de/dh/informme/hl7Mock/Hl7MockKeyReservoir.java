@@ -0,0 +1,107 @@
+package de.dh.informme.hl7Mock;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * uniform random sample of the MSH ids of the HL7 messages
+ * <p>
+ * Random messages are picked from this sample instead of sorting the whole table. The sample is refreshed from
+ * the {@link Hl7MockStore} in the background and new messages are added by reservoir sampling in between.
+ */
+@Component
+public class Hl7MockKeyReservoir {
+
+    @Autowired
+    private Hl7MockStore hl7MockStore;
+
+    /**
+     * maximum number of MSH ids in the sample
+     */
+    @Value("${informme.hl7-mock.random.reservoir-size:10000}")
+    private int capacity;
+
+    /**
+     * guarded by "this"
+     */
+    private List<String> keys = new ArrayList<>();
+
+    /**
+     * number of MSH ids offered to the sample since the last refresh, guarded by "this"
+     */
+    private long offeredKeys = 0;
+
+    @PostConstruct
+    public void init() {
+        refresh();
+    }
+
+    /**
+     * get a random MSH id
+     *
+     * @return random MSH id or null if there are no messages
+     */
+    public synchronized String sample() {
+        if (keys.isEmpty()) {
+            return null;
+        }
+        return keys.get(ThreadLocalRandom.current().nextInt(keys.size()));
+    }
+
+    /**
+     * offer the MSH id of a new message to the sample
+     *
+     * @param mshId MSH id of the new message
+     */
+    public synchronized void add(String mshId) {
+        offeredKeys++;
+        if (keys.size() < capacity) {
+            keys.add(mshId);
+        } else {
+            long index = ThreadLocalRandom.current().nextLong(offeredKeys);
+            if (index < capacity) {
+                keys.set((int) index, mshId);
+            }
+        }
+    }
+
+    /**
+     * remove a MSH id which does not exist anymore
+     *
+     * @param mshId MSH id to remove
+     */
+    public synchronized void remove(String mshId) {
+        keys.remove(mshId);
+    }
+
+    /**
+     * draw a new sample from all MSH ids in the store
+     */
+    @Scheduled(fixedDelayString = "${informme.hl7-mock.random.refresh-interval:600000}", initialDelayString = "${informme.hl7-mock.random.refresh-interval:600000}")
+    public void refresh() {
+        List<String> newKeys = new ArrayList<>();
+        long[] newOfferedKeys = {0};
+        hl7MockStore.forEachMshId(mshId -> {
+            newOfferedKeys[0]++;
+            if (newKeys.size() < capacity) {
+                newKeys.add(mshId);
+            } else {
+                long index = ThreadLocalRandom.current().nextLong(newOfferedKeys[0]);
+                if (index < capacity) {
+                    newKeys.set((int) index, mshId);
+                }
+            }
+        });
+        synchronized (this) {
+            keys = newKeys;
+            offeredKeys = newOfferedKeys[0];
+        }
+    }
+}
@@ -1,9 +1,12 @@
 package de.dh.informme.hl7Mock;
 
+import de.dh.informme.application.ResourceVersion;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import java.util.Optional;
+import java.util.stream.Stream;
 
 public interface Hl7MockRepository extends JpaRepository<Hl7Mock, String> {
 
@@ -16,11 +19,20 @@ public interface Hl7MockRepository extends JpaRepository<Hl7Mock, String> {
     Optional<Hl7Mock> findByMshId(String mshId);
 
     /**
-     * find a random HL7Mock object
+     * find the version and the time of the last change of a HL7 message without loading it; the named query
+     * Hl7Mock.findVersionByMshId
      *
-     * @return random HL7Mock object
+     * @param mshId MSH-Segment identifier
+     * @return version of the found HL7 message
+     */
+    Optional<ResourceVersion> findVersionByMshId(@Param("mshId") String mshId);
+
+    /**
+     * stream the MSH-Segment identifiers of all HL7 messages; must be called within a transaction
+     *
+     * @return MSH-Segment identifiers
      */
-    @Query(value = "SELECT * FROM hl7_mocks ORDER BY RAND() LIMIT 1", nativeQuery = true)
-    Hl7Mock findRandom();
+    @Query("SELECT h.mshId FROM Hl7Mock h")
+    Stream<String> streamAllMshIds();
 
 }
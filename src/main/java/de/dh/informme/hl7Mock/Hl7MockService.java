@@ -1,26 +1,34 @@
 package de.dh.informme.hl7Mock;
 
-import ca.uhn.hl7v2.DefaultHapiContext;
 import ca.uhn.hl7v2.HL7Exception;
-import ca.uhn.hl7v2.HapiContext;
 import ca.uhn.hl7v2.model.DataTypeException;
 import ca.uhn.hl7v2.model.Message;
 import ca.uhn.hl7v2.model.v26.datatype.CX;
 import ca.uhn.hl7v2.model.v26.message.ADT_A01;
+import ca.uhn.hl7v2.model.v26.message.ADT_A05;
 import ca.uhn.hl7v2.model.v26.segment.MSH;
 import ca.uhn.hl7v2.model.v26.segment.PID;
 import ca.uhn.hl7v2.parser.Parser;
+import de.dh.informme.application.ResourceVersion;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.text.SimpleDateFormat;
+import java.util.Collection;
 import java.util.Date;
+import java.util.List;
 
 @Service
 public class Hl7MockService {
 
     @Autowired
-    private Hl7MockRepository hl7MockRepository;
+    private Hl7MockStore hl7MockStore;
+
+    @Autowired
+    private Parser pipeParser;
+
+    @Autowired
+    private Hl7MockKeyReservoir hl7MockKeyReservoir;
 
     /***
      * get a HL7 message by its MSH id
@@ -29,7 +37,17 @@ public class Hl7MockService {
      * @return HL7 message
      */
     public Hl7Mock getByMshId(String mshId) {
-        return hl7MockRepository.findByMshId(mshId).orElse(null);
+        return hl7MockStore.findByMshId(mshId);
+    }
+
+    /**
+     * get the version of a HL7 message without loading the message
+     *
+     * @param mshId MSH id to look for
+     * @return version and time of the last change or null if there is no message with the MSH id
+     */
+    public ResourceVersion getVersionByMshId(String mshId) {
+        return hl7MockStore.findVersionByMshId(mshId);
     }
 
     /**
@@ -42,30 +60,53 @@ public class Hl7MockService {
      * @throws HL7Exception is thrown when there was an exception while parsing the message
      */
     public String updateMessage(String hl7MessageAsString, String newPatientIdentifier) throws HL7Exception {
-        HapiContext context = new DefaultHapiContext();
-        Parser parser = context.getPipeParser();
-        Message message = parser.parse(hl7MessageAsString);
-
-        if (message instanceof ADT_A01 adtMessage) {
-            MSH msh = adtMessage.getMSH();
-            updatePatientIdentifierList(adtMessage.getPID(), newPatientIdentifier);
-            msh.getDateTimeOfMessage().setValue(new SimpleDateFormat("yyyyMMddHHmmss").format(new Date()));
-            String updatedMessage = parser.encode(adtMessage);
-            String processingId = msh.getMessageControlID().getValue();
-            if (getByMshId(processingId) != null) {
-                Hl7Mock hl7Mock = getByMshId(processingId);
-                hl7Mock.setMessage(updatedMessage);
-                hl7MockRepository.saveAndFlush(hl7Mock);
+        Hl7Mock updatedHl7Mock = rewriteMessage(hl7MessageAsString, newPatientIdentifier);
+        if (updatedHl7Mock != null) {
+            List<String> newMshIds = hl7MockStore.saveAll(List.of(updatedHl7Mock));
+            if (newMshIds.isEmpty()) {
                 return "Message updated";
             } else {
-                Hl7Mock hl7Mock = new Hl7Mock(processingId, updatedMessage);
-                hl7MockRepository.save(hl7Mock);
+                newMshIds.forEach(hl7MockKeyReservoir::add);
                 return "Message saved";
             }
         }
         return null;
     }
 
+    /**
+     * add a patient identifier to a given HL7 message without saving it
+     *
+     * @param hl7MessageAsString    HL7 message
+     * @param newPatientIdentifier  new patient identifier
+     * @return HL7Mock with the MSH id and the updated message or null if the message is no ADT_A01 or ADT_A05 message
+     * @throws HL7Exception is thrown when there was an exception while parsing the message
+     */
+    public Hl7Mock rewriteMessage(String hl7MessageAsString, String newPatientIdentifier) throws HL7Exception {
+        Message message = pipeParser.parse(hl7MessageAsString);
+
+        MSH msh;
+        if (message instanceof ADT_A01 adtMessage) {
+            msh = adtMessage.getMSH();
+            updatePatientIdentifierList(adtMessage.getPID(), newPatientIdentifier);
+        } else if (message instanceof ADT_A05 adtMessage) {
+            msh = adtMessage.getMSH();
+            updatePatientIdentifierList(adtMessage.getPID(), newPatientIdentifier);
+        } else {
+            return null;
+        }
+        msh.getDateTimeOfMessage().setValue(new SimpleDateFormat("yyyyMMddHHmmss").format(new Date()));
+        return new Hl7Mock(msh.getMessageControlID().getValue(), pipeParser.encode(message));
+    }
+
+    /**
+     * save updated HL7 messages together; existing messages are replaced
+     *
+     * @param hl7Mocks updated HL7 messages with distinct MSH ids
+     */
+    public void saveMessages(Collection<Hl7Mock> hl7Mocks) {
+        hl7MockStore.saveAll(hl7Mocks).forEach(hl7MockKeyReservoir::add);
+    }
+
     /**
      * update the patient identifier list
      *
@@ -81,17 +122,26 @@ public class Hl7MockService {
     }
 
     /**
-     * get a random HL7Mock out of the database
+     * get a random HL7Mock out of the store
+     * <p>
+     * The MSH id is taken from a sample of all MSH ids, so the message is loaded by its primary key.
      *
      * @return random HL7Mock object
      */
     public Hl7Mock getRandomHl7Mock() {
-        Hl7Mock randomHl7Mock = hl7MockRepository.findRandom();
-        if (randomHl7Mock != null) {
-            return randomHl7Mock;
-        } else {
-            return hl7MockRepository.save(getDefaultTestHl7Mock());
+        String randomMshId = hl7MockKeyReservoir.sample();
+        while (randomMshId != null) {
+            Hl7Mock randomHl7Mock = getByMshId(randomMshId);
+            if (randomHl7Mock != null) {
+                return randomHl7Mock;
+            }
+            // the message was deleted since the sample was drawn
+            hl7MockKeyReservoir.remove(randomMshId);
+            randomMshId = hl7MockKeyReservoir.sample();
         }
+        Hl7Mock defaultHl7Mock = getDefaultTestHl7Mock();
+        hl7MockStore.saveAll(List.of(defaultHl7Mock)).forEach(hl7MockKeyReservoir::add);
+        return defaultHl7Mock;
     }
 
     /**
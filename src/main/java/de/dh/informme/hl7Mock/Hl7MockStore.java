@@ -0,0 +1,47 @@
+package de.dh.informme.hl7Mock;
+
+import de.dh.informme.application.ResourceVersion;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * storage of the HL7 mocks behind the {@link Hl7MockService}
+ * <p>
+ * The backend is chosen with informme.hl7-mock.store: "jpa" keeps the messages in the table hl7_mocks, "file" in
+ * memory-mapped segment files, see {@link FileHl7MockStore}.
+ */
+public interface Hl7MockStore {
+
+    /**
+     * find a HL7 message by its MSH id
+     *
+     * @param mshId MSH id (MSH-10)
+     * @return HL7 message or null if there is no message with the MSH id
+     */
+    Hl7Mock findByMshId(String mshId);
+
+    /**
+     * find the version and the time of the last change of a HL7 message without loading it
+     *
+     * @param mshId MSH id (MSH-10)
+     * @return version of the message or null if there is no message with the MSH id
+     */
+    ResourceVersion findVersionByMshId(String mshId);
+
+    /**
+     * save new HL7 messages and replace the messages of existing MSH ids, all or none of them
+     *
+     * @param hl7Mocks HL7 messages with distinct MSH ids
+     * @return MSH ids of the new messages
+     */
+    List<String> saveAll(Collection<Hl7Mock> hl7Mocks);
+
+    /**
+     * pass the MSH ids of all HL7 messages to an action, in no particular order
+     *
+     * @param action receives the MSH ids
+     */
+    void forEachMshId(Consumer<String> action);
+}
@@ -0,0 +1,291 @@
+package de.dh.informme.hl7Mock;
+
+import ca.uhn.hl7v2.HL7Exception;
+import ca.uhn.hl7v2.model.Segment;
+import ca.uhn.hl7v2.parser.Parser;
+import ca.uhn.hl7v2.util.Terser;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * rewrites the HL7 mocks of processed messages in the background
+ * <p>
+ * Updates are queued by the MSH id of the message. A newer update of a queued MSH id replaces the older one, because
+ * every update rewrites the whole message. A single writer thread rewrites the queued messages and saves them in
+ * batches; a full queue blocks the submitting thread until the writer caught up. The queue is flushed on shutdown.
+ */
+@Slf4j
+@Component
+public class Hl7MockWriteBehind {
+
+    @Autowired
+    private Hl7MockService hl7MockService;
+
+    @Autowired
+    private Parser pipeParser;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    /**
+     * if false, the HL7 mocks are updated synchronously by the submitting thread
+     */
+    @Value("${informme.hl7-mock.write-behind.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * maximum number of queued MSH ids
+     */
+    @Value("${informme.hl7-mock.write-behind.capacity:10000}")
+    private int capacity;
+
+    /**
+     * maximum number of messages saved in one transaction
+     */
+    @Value("${informme.hl7-mock.write-behind.batch-size:100}")
+    private int batchSize;
+
+    /**
+     * time in milliseconds the writer waits for more updates before it writes an incomplete batch
+     */
+    @Value("${informme.hl7-mock.write-behind.linger:200}")
+    private long linger;
+
+    /**
+     * queued updates by MSH id in the order of their first submission, guarded by the queue lock
+     */
+    private final Map<String, PendingUpdate> pendingUpdates = new LinkedHashMap<>();
+
+    /**
+     * a lock instead of a monitor, so virtual threads waiting for space do not pin their carrier thread
+     */
+    private final ReentrantLock queueLock = new ReentrantLock();
+
+    /**
+     * signalled when updates were queued or the writer is stopped
+     */
+    private final Condition updatesQueued = queueLock.newCondition();
+
+    /**
+     * signalled when the writer took updates from the queue
+     */
+    private final Condition spaceAvailable = queueLock.newCondition();
+
+    private volatile boolean running = false;
+
+    private Thread writerThread;
+
+    private Counter coalescedUpdates;
+
+    private Counter failedUpdates;
+
+    @PostConstruct
+    public void start() {
+        Gauge.builder("informme.hl7-mock.write-behind.queue-depth", this, Hl7MockWriteBehind::getQueueDepth)
+                .description("HL7 mock updates waiting to be written")
+                .register(meterRegistry);
+        coalescedUpdates = meterRegistry.counter("informme.hl7-mock.write-behind.coalesced");
+        failedUpdates = meterRegistry.counter("informme.hl7-mock.write-behind.failed");
+        if (enabled) {
+            running = true;
+            writerThread = new Thread(this::runWriter, "hl7-mock-writer");
+            writerThread.setDaemon(true);
+            writerThread.start();
+        }
+    }
+
+    /**
+     * write all queued updates and stop the writer
+     */
+    @PreDestroy
+    public void stop() {
+        if (!enabled) {
+            return;
+        }
+        queueLock.lock();
+        try {
+            running = false;
+            updatesQueued.signalAll();
+            spaceAvailable.signalAll();
+        } finally {
+            queueLock.unlock();
+        }
+        try {
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * queue the update of the HL7 mock of a message, see {@link Hl7MockService#updateMessage}
+     *
+     * @param hl7MessageAsString    HL7 message
+     * @param newPatientIdentifier  new patient identifier
+     * @throws HL7Exception is thrown when the MSH segment of the message could not be read
+     */
+    public void submit(String hl7MessageAsString, String newPatientIdentifier) throws HL7Exception {
+        if (!running) {
+            hl7MockService.updateMessage(hl7MessageAsString, newPatientIdentifier);
+            return;
+        }
+        Segment msh = pipeParser.getCriticalResponseData(hl7MessageAsString);
+        String mshId = Terser.get(msh, 10, 0, 1, 1);
+        if (mshId == null) {
+            hl7MockService.updateMessage(hl7MessageAsString, newPatientIdentifier);
+            return;
+        }
+        PendingUpdate update = new PendingUpdate(hl7MessageAsString, newPatientIdentifier);
+        queueLock.lock();
+        try {
+            while (running && pendingUpdates.size() >= capacity && !pendingUpdates.containsKey(mshId)) {
+                try {
+                    spaceAvailable.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            if (running) {
+                if (pendingUpdates.put(mshId, update) != null) {
+                    coalescedUpdates.increment();
+                }
+                // wake up the writer for the first update and for a full batch
+                if (pendingUpdates.size() == 1 || pendingUpdates.size() >= batchSize) {
+                    updatesQueued.signalAll();
+                }
+                return;
+            }
+        } finally {
+            queueLock.unlock();
+        }
+        // the queue was closed or the thread interrupted while waiting
+        hl7MockService.updateMessage(hl7MessageAsString, newPatientIdentifier);
+    }
+
+    /**
+     * get the number of queued updates
+     *
+     * @return number of queued MSH ids
+     */
+    public int getQueueDepth() {
+        queueLock.lock();
+        try {
+            return pendingUpdates.size();
+        } finally {
+            queueLock.unlock();
+        }
+    }
+
+    /**
+     * write batches until the writer is stopped and the queue is empty
+     */
+    private void runWriter() {
+        while (true) {
+            List<PendingUpdate> batch = takeBatch();
+            if (batch == null) {
+                return;
+            }
+            try {
+                writeBatch(batch);
+            } catch (RuntimeException e) {
+                // the writer must keep running, a stopped writer would block all submitting threads
+                failedUpdates.increment(batch.size());
+                log.error("Could not write {} HL7 mock updates", batch.size(), e);
+            }
+        }
+    }
+
+    /**
+     * wait for a full batch or the linger time and remove the oldest updates from the queue
+     *
+     * @return updates to write or null if the writer is stopped and the queue is empty
+     */
+    private List<PendingUpdate> takeBatch() {
+        queueLock.lock();
+        try {
+            try {
+                while (running && pendingUpdates.isEmpty()) {
+                    updatesQueued.await();
+                }
+                if (running && pendingUpdates.size() < batchSize) {
+                    updatesQueued.await(linger, TimeUnit.MILLISECONDS);
+                }
+            } catch (InterruptedException e) {
+                running = false;
+            }
+            if (pendingUpdates.isEmpty()) {
+                return null;
+            }
+            List<PendingUpdate> batch = new ArrayList<>(Math.min(batchSize, pendingUpdates.size()));
+            Iterator<PendingUpdate> iterator = pendingUpdates.values().iterator();
+            while (iterator.hasNext() && batch.size() < batchSize) {
+                batch.add(iterator.next());
+                iterator.remove();
+            }
+            // wake up threads waiting for space
+            spaceAvailable.signalAll();
+            return batch;
+        } finally {
+            queueLock.unlock();
+        }
+    }
+
+    private void writeBatch(List<PendingUpdate> batch) {
+        Map<String, Hl7Mock> hl7Mocks = new LinkedHashMap<>();
+        for (PendingUpdate update : batch) {
+            try {
+                Hl7Mock hl7Mock = hl7MockService.rewriteMessage(update.message(), update.newPatientIdentifier());
+                if (hl7Mock != null) {
+                    hl7Mocks.put(hl7Mock.getMshId(), hl7Mock);
+                }
+            } catch (HL7Exception | RuntimeException e) {
+                failedUpdates.increment();
+                log.warn("Could not update the HL7 mock of a message", e);
+            }
+        }
+        if (hl7Mocks.isEmpty()) {
+            return;
+        }
+        try {
+            hl7MockService.saveMessages(hl7Mocks.values());
+        } catch (RuntimeException e) {
+            log.debug("Could not save a batch of HL7 mocks, saving them one by one", e);
+            for (Hl7Mock hl7Mock : hl7Mocks.values()) {
+                // the batch was rolled back, so nothing of it has been saved
+                hl7Mock.setVersion(null);
+                try {
+                    hl7MockService.saveMessages(List.of(hl7Mock));
+                } catch (RuntimeException hl7MockException) {
+                    failedUpdates.increment();
+                    log.error("Could not save the HL7 mock of message {}", hl7Mock.getMshId(), hl7MockException);
+                }
+            }
+        }
+    }
+
+    /**
+     * queued update of an HL7 mock
+     *
+     * @param message              HL7 message
+     * @param newPatientIdentifier new patient identifier
+     */
+    private record PendingUpdate(String message, String newPatientIdentifier) {
+    }
+}
@@ -0,0 +1,78 @@
+package de.dh.informme.hl7Mock;
+
+import de.dh.informme.application.ResourceVersion;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * keeps the HL7 mocks in the table hl7_mocks, see {@link Hl7MockRepository}
+ */
+@Component
+@ConditionalOnProperty(name = "informme.hl7-mock.store", havingValue = "jpa", matchIfMissing = true)
+public class JpaHl7MockStore implements Hl7MockStore {
+
+    @Autowired
+    private Hl7MockRepository hl7MockRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Override
+    public Hl7Mock findByMshId(String mshId) {
+        return hl7MockRepository.findByMshId(mshId).orElse(null);
+    }
+
+    @Override
+    public ResourceVersion findVersionByMshId(String mshId) {
+        return hl7MockRepository.findVersionByMshId(mshId).orElse(null);
+    }
+
+    /**
+     * save the messages in one transaction; existing messages are loaded with a single query
+     *
+     * @param hl7Mocks HL7 messages with distinct MSH ids
+     * @return MSH ids of the new messages
+     */
+    @Override
+    public List<String> saveAll(Collection<Hl7Mock> hl7Mocks) {
+        List<String> newMshIds = new ArrayList<>();
+        transactionTemplate.executeWithoutResult(status -> {
+            Map<String, Hl7Mock> existingHl7Mocks = new HashMap<>();
+            for (Hl7Mock hl7Mock : hl7MockRepository.findAllById(hl7Mocks.stream().map(Hl7Mock::getMshId).toList())) {
+                existingHl7Mocks.put(hl7Mock.getMshId(), hl7Mock);
+            }
+            List<Hl7Mock> changedHl7Mocks = new ArrayList<>(hl7Mocks.size());
+            for (Hl7Mock hl7Mock : hl7Mocks) {
+                Hl7Mock existingHl7Mock = existingHl7Mocks.get(hl7Mock.getMshId());
+                if (existingHl7Mock != null) {
+                    existingHl7Mock.setMessage(hl7Mock.getMessage());
+                    changedHl7Mocks.add(existingHl7Mock);
+                } else {
+                    changedHl7Mocks.add(hl7Mock);
+                    newMshIds.add(hl7Mock.getMshId());
+                }
+            }
+            hl7MockRepository.saveAll(changedHl7Mocks);
+        });
+        return newMshIds;
+    }
+
+    @Override
+    public void forEachMshId(Consumer<String> action) {
+        transactionTemplate.executeWithoutResult(status -> {
+            try (Stream<String> mshIds = hl7MockRepository.streamAllMshIds()) {
+                mshIds.forEach(action);
+            }
+        });
+    }
+}
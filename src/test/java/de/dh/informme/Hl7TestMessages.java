@@ -0,0 +1,70 @@
+package de.dh.informme;
+
+/**
+ * HL7 messages for the tests, shaped like the messages of the card readers; the segments are separated by "\r"
+ */
+public final class Hl7TestMessages {
+
+    /**
+     * birthday of the patients as yyyyMMdd if no other is given
+     */
+    public static final String BIRTHDAY = "19900101";
+
+    private Hl7TestMessages() {
+    }
+
+    /**
+     * get an ADT^A01 message of a patient whose identifier is the message control id as well
+     *
+     * @param patientIdentifier patient identifier (PID-3) and message control id (MSH-10)
+     * @param lastName          last name of the patient
+     * @return HL7 message
+     */
+    public static String admission(String patientIdentifier, String lastName) {
+        return admission(patientIdentifier, patientIdentifier, lastName);
+    }
+
+    /**
+     * get an ADT^A01 message of a patient
+     *
+     * @param controlId         message control id (MSH-10)
+     * @param patientIdentifier patient identifier (PID-3)
+     * @param lastName          last name of the patient
+     * @return HL7 message
+     */
+    public static String admission(String controlId, String patientIdentifier, String lastName) {
+        return admission(controlId, patientIdentifier, lastName, BIRTHDAY);
+    }
+
+    /**
+     * get an ADT^A01 message of a patient
+     *
+     * @param controlId         message control id (MSH-10)
+     * @param patientIdentifier patient identifier (PID-3)
+     * @param lastName          last name of the patient
+     * @param birthday          birthday of the patient as yyyyMMdd
+     * @return HL7 message
+     */
+    public static String admission(String controlId, String patientIdentifier, String lastName, String birthday) {
+        return message("ADT^A01", controlId, patientIdentifier, lastName, birthday);
+    }
+
+    /**
+     * get a message of the given type with the segments of an admission
+     *
+     * @param messageType       message type (MSH-9)
+     * @param patientIdentifier patient identifier (PID-3) and message control id (MSH-10)
+     * @param lastName          last name of the patient
+     * @return HL7 message
+     */
+    public static String message(String messageType, String patientIdentifier, String lastName) {
+        return message(messageType, patientIdentifier, patientIdentifier, lastName, BIRTHDAY);
+    }
+
+    private static String message(String messageType, String controlId, String patientIdentifier, String lastName, String birthday) {
+        return "MSH|^~\\&|A|B|C|D|202401041230||" + messageType + "|" + controlId + "|P|2.6\r" +
+                "EVN|A01|202401041230|||\r" +
+                "PID|1||" + patientIdentifier + "^^^Hospital^MR||" + lastName + "^Max^^^Herr||" + birthday + "|M|||Mockstreet 1^^Mockcity^^12345^Deutschland||^PRN^^max@mail.de^49^123^1234567|||||\r" +
+                "PV1|1|I|";
+    }
+}
@@ -0,0 +1,113 @@
+package de.dh.informme.doctorsOffice.hl7;
+
+import ca.uhn.hl7v2.DefaultHapiContext;
+import ca.uhn.hl7v2.HapiContext;
+import ca.uhn.hl7v2.model.v26.message.ADT_A01;
+import ca.uhn.hl7v2.parser.Parser;
+import ca.uhn.hl7v2.validation.builder.support.NoValidationBuilder;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * compares the fast extractor with the HAPI parser on the same messages
+ */
+class Hl7FastPidExtractorTests {
+
+    private static final String MSH = "MSH|^~\\&|A|B|C|D|202401041230||ADT^A01|1|P|2.6\r";
+
+    private static final String EVN = "EVN|A01|202401041230|||\r";
+
+    private Hl7FastPidExtractor hl7FastPidExtractor;
+
+    private Hl7Parser hl7Parser;
+
+    private Parser pipeParser;
+
+    @BeforeEach
+    void setUp() {
+        hl7Parser = new Hl7Parser();
+        hl7FastPidExtractor = new Hl7FastPidExtractor();
+        ReflectionTestUtils.setField(hl7FastPidExtractor, "hl7Parser", hl7Parser);
+        // the fast path does not validate, so HAPI is compared without validation as well
+        HapiContext hapiContext = new DefaultHapiContext();
+        hapiContext.getParserConfiguration().setValidating(false);
+        hapiContext.setValidationRuleBuilder(new NoValidationBuilder());
+        pipeParser = hapiContext.getPipeParser();
+    }
+
+    @Test
+    void extractsTheSameDataAsHapi() throws Exception {
+        List<String> messages = List.of(
+                // complete message
+                MSH + EVN + "PID|1||123^^^Hospital^MR||Mustermann^Max^^^Herr||19900101|M|||Mockstreet 1^^Mockcity^^12345^Deutschland||^PRN^^max@mail.de^49^123^1234567|||||\rPV1|1|I|",
+                // message structure in MSH-9 and no trailing segments
+                MSH.replace("ADT^A01", "ADT^A01^ADT_A01") + EVN + "PID|1||123||Mustermann^Max||19900101|M",
+                // demographic update with the same structure
+                MSH.replace("ADT^A01", "ADT^A08") + EVN + "PID|1||123||Mustermann^Max||19900101|M",
+                // empty and trailing repetitions of the identifiers
+                MSH + EVN + "PID|1||a~~b~||Mustermann^Max||19900101|M",
+                MSH + EVN + "PID|1||~||Mustermann^Max||19900101|M",
+                MSH + EVN + "PID|1||||Mustermann^Max||19900101|M",
+                // subcomponents and further repetitions of the name
+                MSH + EVN + "PID|1||123||Muster&mann^Max&Moritz~Other^Name||19900101|F",
+                // missing address, missing parts of the address and an address without country
+                MSH + EVN + "PID|1||123||Mustermann^Max||19900101|M|||||^PRN^^max@mail.de^49^123^1234567",
+                MSH + EVN + "PID|1||123||Mustermann^Max||19900101|M|||Mockstreet 1^^Mockcity||^PRN^^max@mail.de^49^123^1234567",
+                MSH + EVN + "PID|1||123||Mustermann^Max||19900101|M|||Mockstreet 1&5^^Mockcity^^12345~Second^^City^^1||",
+                MSH + EVN + "PID|1||123||Mustermann^Max||19900101|M|||~Mockstreet 1^^Mockcity^^12345",
+                // missing and partial phone numbers
+                MSH + EVN + "PID|1||123||Mustermann^Max||19900101|M|||Mockstreet 1^^Mockcity^^12345^Deutschland",
+                MSH + EVN + "PID|1||123||Mustermann^Max||19900101|M|||Mockstreet 1^^Mockcity^^12345^Deutschland||^^^max@mail.de",
+                MSH + EVN + "PID|1||123||Mustermann^Max||19900101|M|||Mockstreet 1^^Mockcity^^12345^Deutschland||&x^y~",
+                MSH + EVN + "PID|1||123||Mustermann^Max||19900101|M|||Mockstreet 1^^Mockcity^^12345^Deutschland||~^PRN^^max@mail.de",
+                // custom encoding characters
+                "MSH#$%!*#A#B#C#D#202401041230##ADT$A01#1#P#2.6\rEVN#A01#202401041230\r" +
+                        "PID#1##1%2##Muster*mann$Max##19900101#M###Mockstreet 1$$Mockcity$$12345$Deutschland##$PRN$$max@mail.de$49$123$1234567\r",
+                // empty segments between the segments
+                MSH + "\r" + EVN + "\rPID|1||123||Mustermann^Max||19900101|M\r\r"
+        );
+        for (String message : messages) {
+            Hl7PatientData fastData = hl7FastPidExtractor.extract(message);
+            ADT_A01 adtMessage = (ADT_A01) pipeParser.parse(message);
+            Hl7PatientData hapiData = hl7Parser.getPatientData(adtMessage.getPID());
+            assertNotNull(fastData, message);
+            assertEquals(hapiData, fastData, message);
+        }
+    }
+
+    @Test
+    void leavesSpecialMessagesToHapi() throws Exception {
+        List<String> messages = List.of(
+                // escape sequences
+                MSH + EVN + "PID|1||123||M\\T\\ller^Max||19900101|M",
+                // other trigger events, structures and versions
+                MSH.replace("ADT^A01", "ADT^A03") + EVN + "PID|1||123||Mustermann^Max||19900101|M",
+                MSH.replace("ADT^A01", "ADT^A01^ADT_A05") + EVN + "PID|1||123||Mustermann^Max||19900101|M",
+                MSH.replace("|2.6", "|2.5") + EVN + "PID|1||123||Mustermann^Max||19900101|M",
+                // only a business phone number
+                MSH + EVN + "PID|1||123||Mustermann^Max||19900101|M||||||^WPN^^max@mail.de^49^123^1234567",
+                // line feeds instead of carriage returns
+                MSH.replace('\r', '\n') + "PID|1||123||Mustermann^Max||19900101|M",
+                // no PID segment, two PID segments and a second MSH segment
+                MSH + EVN,
+                MSH + EVN + "PID|1||123||Mustermann^Max||19900101|M\rPID|1||456||Mustermann^Max||19900101|M",
+                MSH + EVN + "PID|1||123||Mustermann^Max||19900101|M\r" + MSH,
+                // invalid segment name and missing birthday
+                MSH + EVN + "pid|1||123||Mustermann^Max||19900101|M",
+                MSH + EVN + "PID|1||123||Mustermann^Max|||M",
+                // not an HL7 message
+                "MSH",
+                "Hello world"
+        );
+        for (String message : messages) {
+            assertNull(hl7FastPidExtractor.extract(message), message);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package de.dh.informme.doctorsOffice.hl7;
+
+import de.dh.informme.doctorsOffice.patient.Patient;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+@SpringBootTest(properties = {"informme.hl7.ingest.threads=1", "informme.hl7.ingest.queue-capacity=1", "informme.hl7.ingest.timeout=500"})
+class Hl7IngestServiceTests {
+
+    @Autowired
+    private Hl7IngestService hl7IngestService;
+
+    @MockBean
+    private Hl7Service hl7Service;
+
+    @Test
+    void fullQueueRejectsMessagesAndWaitingMessagesTimeOut() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        Patient patient = new Patient();
+        when(hl7Service.processMessage(anyString(), anyBoolean())).thenAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            return patient;
+        });
+        try {
+            CompletableFuture<Patient> running = hl7IngestService.submit("running", true);
+            // wait until the worker has taken the first message from the queue
+            while (hl7IngestService.getQueueDepth() > 0) {
+                Thread.sleep(10);
+            }
+            CompletableFuture<Patient> queued = hl7IngestService.submit("queued", true);
+
+            assertThrows(RejectedExecutionException.class, () -> hl7IngestService.submit("rejected", true));
+
+            ExecutionException timeout = assertThrows(ExecutionException.class, () -> queued.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(TimeoutException.class, timeout.getCause());
+            assertInstanceOf(TimeoutException.class, assertThrows(ExecutionException.class, () -> running.get(5, TimeUnit.SECONDS)).getCause());
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    void processedMessageCompletesWithThePatient() throws Exception {
+        Patient patient = new Patient();
+        when(hl7Service.processMessage(anyString(), anyBoolean())).thenReturn(patient);
+
+        assertEquals(patient, hl7IngestService.submit("message", true).get(5, TimeUnit.SECONDS));
+    }
+}
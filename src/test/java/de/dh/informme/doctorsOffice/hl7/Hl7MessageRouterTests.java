@@ -0,0 +1,71 @@
+package de.dh.informme.doctorsOffice.hl7;
+
+import de.dh.informme.doctorsOffice.patient.Patient;
+import de.dh.informme.error.UnsupportedMessageTypeError;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import static de.dh.informme.Hl7TestMessages.message;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@SpringBootTest(properties = "informme.hl7-mock.write-behind.enabled=false")
+class Hl7MessageRouterTests {
+
+    @Autowired
+    private Hl7Service hl7Service;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    void messageTypeIsReadFromMsh9() {
+        assertEquals("ADT^A01", Hl7MessageRouter.readMessageType(message("ADT^A01^ADT_A01", "R0", "Type")));
+        assertEquals("ORU^R01", Hl7MessageRouter.readMessageType("MSH#^~\\&#A#B#C#D#2024##ORU^R01#1#P#2.6\rOBR#1"));
+        assertEquals("ACK", Hl7MessageRouter.readMessageType("MSH|^~\\&|A|B|C|D|2024||ACK|1|P|2.6\rMSA|AA|1"));
+        // MSH-9 is missing, the next segment must not be read as MSH
+        assertNull(Hl7MessageRouter.readMessageType("MSH|^~\\&|A|B|C|D\rPID|1||||||||ADT^A01"));
+        assertNull(Hl7MessageRouter.readMessageType("PID|1||123"));
+    }
+
+    @Test
+    void unsupportedTypeIsRejectedBeforeParsing() {
+        double rejected = meterRegistry.counter("informme.hl7.messages", "type", "ORU^R01", "result", "rejected").count();
+        long parsed = meterRegistry.timer("informme.hl7.stage", "stage", "parse").count();
+
+        UnsupportedMessageTypeError error = assertThrows(UnsupportedMessageTypeError.class,
+                () -> hl7Service.processMessage(message("ORU^R01", "R1", "Result"), true));
+
+        assertEquals("ORU^R01", error.getMessageType());
+        assertEquals(rejected + 1, meterRegistry.counter("informme.hl7.messages", "type", "ORU^R01", "result", "rejected").count());
+        assertEquals(parsed, meterRegistry.timer("informme.hl7.stage", "stage", "parse").count());
+    }
+
+    @Test
+    void unknownTypesShareOneTag() {
+        double other = meterRegistry.counter("informme.hl7.messages", "type", "other", "result", "rejected").count();
+
+        assertThrows(UnsupportedMessageTypeError.class, () -> hl7Service.processMessage(message("ZZZ^Z99", "R3", "Unknown"), true));
+
+        assertEquals(other + 1, meterRegistry.counter("informme.hl7.messages", "type", "other", "result", "rejected").count());
+        assertNull(meterRegistry.find("informme.hl7.messages").tag("type", "ZZZ^Z99").meter());
+    }
+
+    @Test
+    void demographicUpdatesAreProcessed() throws Exception {
+        double accepted = meterRegistry.counter("informme.hl7.messages", "type", "ADT^A31", "result", "accepted").count();
+
+        Patient patient = hl7Service.processMessage(message("ADT^A28^ADT_A05", "R2", "Register"), true);
+        Patient updatedPatient = hl7Service.processMessage(message("ADT^A31^ADT_A05", patient.getHl7Id(), "Register")
+                .replace("Mockstreet 1", "Newstreet 2"), true);
+
+        assertNotNull(patient.getPatientId());
+        assertEquals(patient.getPatientId(), updatedPatient.getPatientId());
+        assertEquals("Newstreet 2, 12345 Mockcity, Deutschland", updatedPatient.getAddress());
+        assertEquals(accepted + 1, meterRegistry.counter("informme.hl7.messages", "type", "ADT^A31", "result", "accepted").count());
+    }
+}
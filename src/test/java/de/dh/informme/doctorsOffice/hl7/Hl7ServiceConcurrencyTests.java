@@ -0,0 +1,115 @@
+package de.dh.informme.doctorsOffice.hl7;
+
+import de.dh.informme.doctorsOffice.patient.Patient;
+import de.dh.informme.doctorsOffice.patient.PatientCardIdentity;
+import de.dh.informme.doctorsOffice.patient.PatientRepository;
+import de.dh.informme.doctorsOffice.patient.PatientResolution;
+import de.dh.informme.doctorsOffice.patient.PatientService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static de.dh.informme.Hl7TestMessages.admission;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+
+@SpringBootTest
+class Hl7ServiceConcurrencyTests {
+
+    private static final int THREADS = 16;
+
+    private static final int READS_PER_THREAD = 10;
+
+    @Autowired
+    private Hl7Service hl7Service;
+
+    @Autowired
+    private PatientRepository patientRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @SpyBean
+    private PatientService patientService;
+
+    @Test
+    void sameCardFromManyThreadsIsSavedOnce() throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<?>> reads = new ArrayList<>();
+            for (int thread = 0; thread < THREADS; thread++) {
+                int number = thread;
+                String ownIdentifier = "OWN" + number;
+                reads.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < READS_PER_THREAD; i++) {
+                        // every thread reads the same card and a card of its own patient
+                        hl7Service.processMessage(admission("SAME", "SAME", "Gleichzeitig", "19850505"), true);
+                        hl7Service.processMessage(admission(ownIdentifier, ownIdentifier, "Eigen" + (char) ('a' + number), "197001" + String.format("%02d", number + 1)), true);
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> read : reads) {
+                // rethrows any exception of the reads, e.g. a DuplicatePatientError
+                read.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        List<Patient> patients = patientRepository.findAll();
+        assertEquals(1, patients.stream().filter(patient -> "Gleichzeitig".equals(patient.getLastName())).count());
+        for (int thread = 0; thread < THREADS; thread++) {
+            String lastName = "Eigen" + (char) ('a' + thread);
+            assertEquals(1, patients.stream().filter(patient -> lastName.equals(patient.getLastName())).count(), lastName);
+        }
+    }
+
+    @Test
+    void patientSavedByAnotherInstanceIsFoundOnRetry() throws Exception {
+        AtomicReference<Patient> otherInstancePatient = new AtomicReference<>();
+        doAnswer(invocation -> {
+            PatientResolution resolution = (PatientResolution) invocation.callRealMethod();
+            if (otherInstancePatient.get() == null) {
+                // another instance saves the patient of the same card after this lookup missed it
+                Patient patient = new Patient();
+                patient.setHl7Id("OTHER1");
+                patient.setFirstName("Max");
+                patient.setLastName("Andereinstanz");
+                patient.setBirthday(invocation.getArgument(3));
+                patient.setAddress("Mockstreet 1, 12345 Mockcity, Deutschland");
+                patient.setCardIdentity(PatientCardIdentity.of(patient));
+                otherInstancePatient.set(patientRepository.save(patient));
+            }
+            return resolution;
+        }).when(patientService).resolvePatient(any(), eq("Max"), eq("Andereinstanz"), any());
+        double newPatients = meterRegistry.counter("informme.hl7.outcomes", "outcome", "new").count();
+        double updatedPatients = meterRegistry.counter("informme.hl7.outcomes", "outcome", "updated").count();
+
+        Patient patient = hl7Service.processMessage(admission("INSTANCE1", "INSTANCE1", "Andereinstanz", "19800808"), true);
+
+        assertNotNull(otherInstancePatient.get());
+        assertEquals(otherInstancePatient.get().getPatientId(), patient.getPatientId());
+        assertEquals(1, patientRepository.findAll().stream().filter(p -> "Andereinstanz".equals(p.getLastName())).count());
+        // the failed insert is not counted
+        assertEquals(newPatients, meterRegistry.counter("informme.hl7.outcomes", "outcome", "new").count());
+        assertEquals(updatedPatients + 1, meterRegistry.counter("informme.hl7.outcomes", "outcome", "updated").count());
+    }
+}
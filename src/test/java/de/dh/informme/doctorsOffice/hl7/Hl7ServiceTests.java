@@ -0,0 +1,126 @@
+package de.dh.informme.doctorsOffice.hl7;
+
+import de.dh.informme.doctorsOffice.patient.Patient;
+import de.dh.informme.doctorsOffice.patient.PatientRepository;
+import de.dh.informme.doctorsOffice.patient.PatientService;
+import de.dh.informme.error.DuplicatePatientError;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.Date;
+
+import static de.dh.informme.Hl7TestMessages.admission;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = {"spring.jpa.properties.hibernate.generate_statistics=true", "informme.hl7-mock.write-behind.enabled=false"})
+class Hl7ServiceTests {
+
+    @Autowired
+    private Hl7Service hl7Service;
+
+    @Autowired
+    private PatientRepository patientRepository;
+
+    @Autowired
+    private PatientService patientService;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @Test
+    void knownPatientIsResolvedWithOneQuery() throws Exception {
+        Patient patient = hl7Service.processMessage(admission("Q1", "Query"), true);
+        String message = admission(patient.getHl7Id(), "Query");
+
+        statistics.clear();
+        Patient knownPatient = hl7Service.processMessage(message, true);
+
+        assertEquals(patient.getPatientId(), knownPatient.getPatientId());
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void fingerprintIsStoredForPatientsWithoutOne() throws Exception {
+        Patient patient = hl7Service.processMessage(admission("Q7", "Fingerprint"), true);
+        assertNotNull(patientRepository.findByPatientId(patient.getPatientId()).orElseThrow().getDemographicsFingerprint());
+        // a patient saved before the fingerprint was introduced
+        patientRepository.updateDemographicsFingerprint(patient.getPatientId(), null);
+        String message = admission(patient.getHl7Id(), "Fingerprint");
+
+        hl7Service.processMessage(message, true);
+        statistics.clear();
+        Patient knownPatient = hl7Service.processMessage(message, true);
+
+        assertEquals(patient.getPatientId(), knownPatient.getPatientId());
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityUpdateCount());
+    }
+
+    @Test
+    void newPatientIsSavedOnce() throws Exception {
+        Patient patient = hl7Service.processMessage(admission("Q2", "Newpatient"), true);
+
+        assertEquals(1, patientRepository.findByFirstNameAndLastNameAndBirthday(patient.getFirstName(), patient.getLastName(), patient.getBirthday()).size());
+    }
+
+    @Test
+    void outcomesAndStagesAreRecorded() throws Exception {
+        double newPatients = meterRegistry.counter("informme.hl7.outcomes", "outcome", "new").count();
+        double matchedPatients = meterRegistry.counter("informme.hl7.outcomes", "outcome", "matched").count();
+        double updatedPatients = meterRegistry.counter("informme.hl7.outcomes", "outcome", "updated").count();
+        long parsedMessages = meterRegistry.timer("informme.hl7.stage", "stage", "parse").count();
+        long savedPatients = meterRegistry.timer("informme.hl7.stage", "stage", "save").count();
+        long mockUpdates = meterRegistry.timer("informme.hl7.stage", "stage", "mock-update").count();
+
+        Patient patient = hl7Service.processMessage(admission("Q3", "Metrics"), true);
+        hl7Service.processMessage(admission(patient.getHl7Id(), "Metrics"), true);
+        // an unknown HL7 id with the same name and birthday
+        hl7Service.processMessage(admission("Q7", "Metrics"), true);
+        // saves outside of health card processing are not timed as a stage
+        patientService.savePatient(new Patient(null, "Q8", "Max", "Stagemann", new Date(631152000000L),
+                "Mockstreet 1, 12345 Mockcity", null, null, "M", null, null, null, null));
+
+        assertEquals(newPatients + 1, meterRegistry.counter("informme.hl7.outcomes", "outcome", "new").count());
+        assertEquals(matchedPatients + 1, meterRegistry.counter("informme.hl7.outcomes", "outcome", "matched").count());
+        assertEquals(updatedPatients + 1, meterRegistry.counter("informme.hl7.outcomes", "outcome", "updated").count());
+        assertEquals(parsedMessages + 3, meterRegistry.timer("informme.hl7.stage", "stage", "parse").count());
+        assertEquals(savedPatients + 2, meterRegistry.timer("informme.hl7.stage", "stage", "save").count());
+        assertEquals(mockUpdates + 2, meterRegistry.timer("informme.hl7.stage", "stage", "mock-update").count());
+    }
+
+    @Test
+    void patientWithSimilarNameIsADuplicate() throws Exception {
+        hl7Service.processMessage(admission("Q4", "Müller"), true);
+
+        assertThrows(DuplicatePatientError.class, () -> hl7Service.processMessage(admission("Q5", "Mueller"), true));
+        assertThrows(DuplicatePatientError.class, () -> hl7Service.processMessage(admission("Q6", "Mülller"), true));
+        assertTrue(patientRepository.findAll().stream().noneMatch(patient -> "Mueller".equals(patient.getLastName())));
+
+        // twins have similar names as well, the reception saves the second one after checking the card
+        hl7Service.processMessage(admission("Q10", "Schmidt").replace("^Max^", "^Lena^"), true);
+        String secondTwin = admission("Q11", "Schmidt").replace("^Max^", "^Lina^");
+        assertThrows(DuplicatePatientError.class, () -> hl7Service.processMessage(secondTwin, true));
+        Patient patient = hl7Service.processMessage(secondTwin, true, true);
+        assertNotNull(patient.getPatientId());
+        assertEquals("Lina", patient.getFirstName());
+    }
+}
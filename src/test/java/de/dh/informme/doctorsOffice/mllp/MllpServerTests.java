@@ -0,0 +1,112 @@
+package de.dh.informme.doctorsOffice.mllp;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+import static de.dh.informme.Hl7TestMessages.admission;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = {"informme.mllp.enabled=true", "informme.mllp.port=0", "informme.mllp.max-pipelined-messages=2"})
+class MllpServerTests {
+
+    /**
+     * names which are not similar, so no message is rejected as duplicate of another one
+     */
+    private static final String[] LAST_NAMES = {"Adler", "Becker", "Fuchs", "Hoffmann", "Wagner"};
+
+    /**
+     * time to wait for an ACK before the test fails instead of hanging
+     */
+    private static final int READ_TIMEOUT_MILLIS = 10000;
+
+    @Autowired
+    private MllpServer mllpServer;
+
+    @Test
+    void pipelinedMessagesAreAcknowledgedInOrder() throws IOException {
+        try (Socket socket = connect()) {
+            OutputStream out = socket.getOutputStream();
+            for (int i = 1; i <= 5; i++) {
+                writeFrame(out, admission("MLLP" + i, LAST_NAMES[i - 1]));
+            }
+            out.flush();
+            InputStream in = socket.getInputStream();
+            for (int i = 1; i <= 5; i++) {
+                String ack = readFrame(in);
+                assertTrue(ack.contains("MSA|AA|MLLP" + i), ack);
+            }
+        }
+    }
+
+    @Test
+    void unparseableMessageIsRejected() throws IOException {
+        try (Socket socket = connect()) {
+            writeFrame(socket.getOutputStream(), "MSH|^~\\&|A|B|C|D|202401041230||ADT^A01|BROKEN|P|2.6\rPID|no-valid-segment|||\rXYZ");
+            String ack = readFrame(socket.getInputStream());
+            assertTrue(ack.contains("MSA|AR|BROKEN"), ack);
+        }
+    }
+
+    @Test
+    void garbageFrameDoesNotStopTheListener() throws IOException {
+        try (Socket socket = connect()) {
+            OutputStream out = socket.getOutputStream();
+            writeFrame(out, "MSH");
+            writeFrame(out, admission("AFTERGARBAGE", "Zimmermann"));
+            out.flush();
+            InputStream in = socket.getInputStream();
+            String reject = readFrame(in);
+            assertTrue(reject.contains("MSA|AR|"), reject);
+            String ack = readFrame(in);
+            assertTrue(ack.contains("MSA|AA|AFTERGARBAGE"), ack);
+        }
+        try (Socket socket = connect()) {
+            writeFrame(socket.getOutputStream(), admission("NEWCONNECTION", "Schulze"));
+            String ack = readFrame(socket.getInputStream());
+            assertTrue(ack.contains("MSA|AA|NEWCONNECTION"), ack);
+        }
+    }
+
+    private Socket connect() throws IOException {
+        Socket socket = new Socket("localhost", mllpServer.getLocalPort());
+        socket.setSoTimeout(READ_TIMEOUT_MILLIS);
+        return socket;
+    }
+
+    private void writeFrame(OutputStream out, String message) throws IOException {
+        out.write(MllpConnection.START_BLOCK);
+        out.write(message.getBytes(StandardCharsets.UTF_8));
+        out.write(MllpConnection.END_BLOCK);
+        out.write(MllpConnection.CARRIAGE_RETURN);
+    }
+
+    private String readFrame(InputStream in) throws IOException {
+        ByteArrayOutputStream frame = new ByteArrayOutputStream();
+        while (readByte(in) != MllpConnection.START_BLOCK) {
+            // skip everything before the frame
+        }
+        int b;
+        while ((b = readByte(in)) != MllpConnection.END_BLOCK) {
+            frame.write(b);
+        }
+        readByte(in);
+        return frame.toString(StandardCharsets.UTF_8);
+    }
+
+    private int readByte(InputStream in) throws IOException {
+        int b = in.read();
+        if (b < 0) {
+            throw new EOFException("Connection closed by the MLLP listener");
+        }
+        return b;
+    }
+}
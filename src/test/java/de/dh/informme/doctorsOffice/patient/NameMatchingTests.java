@@ -0,0 +1,25 @@
+package de.dh.informme.doctorsOffice.patient;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class NameMatchingTests {
+
+    @Test
+    void namesWhichSoundAlikeHaveTheSameCode() {
+        assertEquals("3412", NameMatching.phoneticCode(NameMatching.normalize("Wikipedia")));
+        assertEquals("65752682", NameMatching.phoneticCode(NameMatching.normalize("Müller-Lüdenscheidt")));
+        assertEquals(NameMatching.phoneticCode(NameMatching.normalize("Müller")), NameMatching.phoneticCode(NameMatching.normalize("Mueller")));
+        assertEquals(NameMatching.phoneticCode(NameMatching.normalize("Meier")), NameMatching.phoneticCode(NameMatching.normalize("Meyer")));
+    }
+
+    @Test
+    void similarityOfNames() {
+        assertEquals(1, NameMatching.similarity(NameMatching.normalize("Müller"), NameMatching.normalize("Mueller")));
+        assertEquals(0.961, NameMatching.similarity("martha", "marhta"), 0.001);
+        assertTrue(NameMatching.similarity("schmidt", "schmitt") > 0.9);
+        assertTrue(NameMatching.similarity("schmidt", "becker") < 0.6);
+    }
+}
@@ -0,0 +1,78 @@
+package de.dh.informme.doctorsOffice.patient;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.Date;
+
+import static de.dh.informme.Hl7TestMessages.admission;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class PatientControllerTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private PatientService patientService;
+
+    @Test
+    void unchangedPatientIsAnsweredWithNotModified() throws Exception {
+        Patient patient = patientService.savePatient(new Patient(null, "ETAG1", "Max", "Etagmann", new Date(631152000000L),
+                "Mockstreet 1, 12345 Mockcity", null, null, "M", null, null, null, null));
+        String url = "/patient/get/" + patient.getPatientId();
+
+        String etag = mockMvc.perform(get(url))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertNotNull(etag);
+        mockMvc.perform(get(url).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+
+        Patient storedPatient = patientService.getPatientById(patient.getPatientId());
+        storedPatient.setTelephone("+49 123 7654321");
+        patientService.updatePatient(storedPatient);
+
+        String newEtag = mockMvc.perform(get(url).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertNotEquals(etag, newEtag);
+    }
+
+    @Test
+    void healthCardBatchIsSplitAndAnsweredInOrder() throws Exception {
+        String batch = "FHS|^~\\&|A|B|C|D|202401041230\r\n" +
+                "BHS|^~\\&|A|B|C|D|202401041230\r\n" +
+                admission("BATCH1", "Kowalski").replace("\r", "\r\n") + "\r\n" +
+                "MSH|^~\\&|A|B|C|D|202401041230||ADT^A01|BATCH2|P|2.6\r\nPID|no-valid-segment|||\r\nXYZ\r\n" +
+                admission("BATCH3", "Lindqvist").replace("\r", "\r\n") + "\r\n" +
+                "BTS|3\r\n" +
+                "FTS|1\r\n";
+
+        mockMvc.perform(post("/patient/read-batch").contentType(MediaType.TEXT_PLAIN).content(batch))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(3))
+                .andExpect(jsonPath("$[0].index").value(0))
+                .andExpect(jsonPath("$[0].status").value("OK"))
+                .andExpect(jsonPath("$[0].patient.lastName").value("Kowalski"))
+                .andExpect(jsonPath("$[1].index").value(1))
+                .andExpect(jsonPath("$[1].status").value("PARSE_ERROR"))
+                .andExpect(jsonPath("$[2].index").value(2))
+                .andExpect(jsonPath("$[2].status").value("OK"))
+                .andExpect(jsonPath("$[2].patient.lastName").value("Lindqvist"));
+    }
+}
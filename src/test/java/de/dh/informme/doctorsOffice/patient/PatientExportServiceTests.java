@@ -0,0 +1,67 @@
+package de.dh.informme.doctorsOffice.patient;
+
+import ca.uhn.hl7v2.model.v26.message.ADT_A01;
+import ca.uhn.hl7v2.parser.Parser;
+import de.dh.informme.doctorsOffice.hl7.Hl7Parser;
+import de.dh.informme.doctorsOffice.hl7.Hl7PatientData;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+class PatientExportServiceTests {
+
+    @Autowired
+    private PatientExportService patientExportService;
+
+    @Autowired
+    private PatientRepository patientRepository;
+
+    @Autowired
+    private Parser pipeParser;
+
+    @Autowired
+    private Hl7Parser hl7Parser;
+
+    @Test
+    void exportedPatientsCanBeReadAgain() throws Exception {
+        Patient patient = new Patient();
+        patient.setHl7Id("EXP1");
+        patient.setFirstName("Erika");
+        patient.setLastName("Export");
+        patient.setBirthday(new Date(631152000000L));
+        patient.setSex("F");
+        patient.setAddress("Mockstreet 1, 12345 Mockcity, Deutschland");
+        patient.setTelephone("+49 123 1234567");
+        patient.setEmail("erika@mail.de");
+        patientRepository.save(patient);
+        long patients = patientRepository.count();
+
+        StringWriter json = new StringWriter();
+        assertEquals(patients, patientExportService.exportPatients(PatientExportService.Format.NDJSON, json));
+        List<String> lines = json.toString().lines().toList();
+        assertEquals(patients, lines.size());
+        assertTrue(lines.stream().anyMatch(line -> line.contains("\"hl7Id\":\"EXP1\"")), json.toString());
+
+        StringWriter hl7 = new StringWriter();
+        assertEquals(patients, patientExportService.exportPatients(PatientExportService.Format.HL7, hl7));
+        String exported = Arrays.stream(hl7.toString().split("\r(?=MSH)"))
+                .filter(message -> message.contains("|EXP1^"))
+                .findFirst().orElseThrow();
+        ADT_A01 message = (ADT_A01) pipeParser.parse(exported);
+        Hl7PatientData data = hl7Parser.getPatientData(message.getPID());
+        assertEquals("Erika", data.getFirstName());
+        assertEquals("Export", data.getLastName());
+        assertEquals("Mockstreet 1, 12345 Mockcity, Deutschland", data.getAddress());
+        assertEquals("+49 123 1234567", data.getTelephone());
+        assertEquals("erika@mail.de", data.getEmail());
+    }
+}
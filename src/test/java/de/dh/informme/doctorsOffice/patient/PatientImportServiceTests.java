@@ -0,0 +1,66 @@
+package de.dh.informme.doctorsOffice.patient;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = "informme.patient.import.chunk-size=2")
+class PatientImportServiceTests {
+
+    @Autowired
+    private PatientImportService patientImportService;
+
+    @Autowired
+    private PatientRepository patientRepository;
+
+    @Test
+    void csvRowsAreImportedAndFailuresReported() throws Exception {
+        String csv = """
+                hl7Id,lastName,firstName,birthday,address,sex
+                IMP1,Import,Anna,01.02.1990,"Mockstreet 1, 12345 Mockcity",F
+                IMP2,Import,Berta,31.02.1990,,F
+
+                ,Import,Clara,03.04.1990,,F
+                IMP1,Import,Dora,05.06.1990,,F
+                IMP3,Import,,07.08.1990,,F
+                """;
+        List<PatientImportEvent> events = new ArrayList<>();
+
+        PatientImportEvent done = patientImportService.importPatients(new StringReader(csv), PatientImportService.Format.CSV, true, events::add);
+
+        assertEquals(5, done.getProcessed());
+        assertEquals(2, done.getImported());
+        assertEquals(3, done.getFailed());
+        List<Long> failedLines = events.stream().filter(event -> event.getType() == PatientImportEvent.Type.FAILURE).map(PatientImportEvent::getLine).sorted().toList();
+        assertEquals(List.of(3L, 6L, 7L), failedLines);
+        assertTrue(events.stream().anyMatch(event -> event.getType() == PatientImportEvent.Type.PROGRESS));
+        assertEquals("Mockstreet 1, 12345 Mockcity", patientRepository.findByHl7Id("IMP1").orElseThrow().getAddress());
+        // a row without HL7 id gets a new one
+        assertTrue(patientRepository.findAll().stream().anyMatch(patient -> "Clara".equals(patient.getFirstName()) && patient.getHl7Id() != null));
+    }
+
+    @Test
+    void jsonLinesAreImported() throws Exception {
+        String json = """
+                {"hl7Id":"IMPJ1","firstName":"Emil","lastName":"Import","birthday":"01.02.1990"}
+                {"hl7Id":"IMPJ2","firstName":"Fritz","lastName":"Import","birthday":"01.02.1990","patientId":1}
+                {"firstName":
+                """;
+
+        PatientImportEvent done = patientImportService.importPatients(new StringReader(json), PatientImportService.Format.NDJSON, true, event -> {
+        });
+
+        assertEquals(2, done.getImported());
+        assertEquals(1, done.getFailed());
+        // the patientId of the file is ignored, so no existing patient is overwritten
+        assertNotEquals(1L, patientRepository.findByHl7Id("IMPJ2").orElseThrow().getPatientId());
+    }
+}
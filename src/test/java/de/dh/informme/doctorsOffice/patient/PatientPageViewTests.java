@@ -0,0 +1,71 @@
+package de.dh.informme.doctorsOffice.patient;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.context.WebApplicationContext;
+import org.springframework.web.servlet.DispatcherServlet;
+import org.springframework.web.servlet.View;
+import org.springframework.web.servlet.i18n.FixedLocaleResolver;
+import org.thymeleaf.spring6.view.ThymeleafViewResolver;
+
+import java.sql.Timestamp;
+import java.util.Locale;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest
+class PatientPageViewTests {
+
+    @Autowired
+    private PatientPageView patientPageView;
+
+    @Autowired
+    private ThymeleafViewResolver thymeleafViewResolver;
+
+    @Autowired
+    private WebApplicationContext webApplicationContext;
+
+    @Test
+    void prerenderedPageIsTheSameAsTheThymeleafPage() throws Exception {
+        PatientView withoutTelephone = new PatientView(1L, "123456", "Max <b>", "Müller & \"Söhne\"", Timestamp.valueOf("1990-01-01 00:00:00"),
+                "Mockstreet 1, 12345 Mockcity", null, "max@mail.de", "M", 0L, null);
+        PatientView withTelephone = new PatientView(2L, "654321", "Erika", "Mustermann", Timestamp.valueOf("1985-06-15 00:00:00"),
+                null, "+49 123 1234567", null, "F", 0L, null);
+        for (Locale locale : new Locale[]{Locale.GERMANY, Locale.ENGLISH}) {
+            View thymeleafView = thymeleafViewResolver.resolveViewName(PatientPageView.TEMPLATE, locale);
+            for (PatientView patient : new PatientView[]{withoutTelephone, withTelephone}) {
+                assertEquals(render(thymeleafView, patient, locale), render(patientPageView, patient, locale));
+            }
+        }
+    }
+
+    @Test
+    void pagesAreCachedByTheLocaleOfTheMessages() throws Exception {
+        PatientView patient = new PatientView(1L, "123456", "Max", "Mustermann", Timestamp.valueOf("1990-01-01 00:00:00"),
+                null, null, null, "M", 0L, null);
+        Map<?, ?> pages = (Map<?, ?>) ReflectionTestUtils.getField(patientPageView, "pages");
+        for (Locale locale : new Locale[]{Locale.GERMANY, Locale.ENGLISH}) {
+            render(patientPageView, patient, locale);
+        }
+        int cachedLocales = pages.size();
+        for (Locale locale : new Locale[]{Locale.US, Locale.UK, Locale.GERMAN, new Locale("xx"), new Locale("xx", "YY", "zz")}) {
+            render(patientPageView, patient, locale);
+        }
+        assertEquals(cachedLocales, pages.size());
+        assertEquals(PatientPageView.messagesLocale(Locale.ENGLISH), PatientPageView.messagesLocale(Locale.US));
+    }
+
+    private String render(View view, PatientView patient, Locale locale) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest(webApplicationContext.getServletContext(), "GET", "/patient/show/1");
+        request.setAttribute(DispatcherServlet.WEB_APPLICATION_CONTEXT_ATTRIBUTE, webApplicationContext);
+        request.setAttribute(DispatcherServlet.LOCALE_RESOLVER_ATTRIBUTE, new FixedLocaleResolver(locale));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        view.render(Map.of("patient", patient), request, response);
+        return response.getContentAsString();
+    }
+}
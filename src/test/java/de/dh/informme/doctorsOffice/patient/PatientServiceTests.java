@@ -0,0 +1,45 @@
+package de.dh.informme.doctorsOffice.patient;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+@SpringBootTest
+class PatientServiceTests {
+
+    @Autowired
+    private PatientService patientService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    void viewIsSerializedLikeThePatient() throws Exception {
+        Patient patient = patientService.savePatient(new Patient(null, "VIEW1", "Max", "Viewmann", new Date(631152000000L),
+                "Mockstreet 1, 12345 Mockcity", "+49 123 1234567", "max@mail.de", "M", null, null, null, null));
+
+        PatientView view = patientService.getPatientViewById(patient.getPatientId());
+
+        assertEquals(objectMapper.writeValueAsString(patientService.getPatientById(patient.getPatientId())), objectMapper.writeValueAsString(view));
+        assertNull(patientService.getPatientViewById(-1L));
+    }
+
+    @Test
+    void randomPatientIdExists() {
+        for (int i = 0; i < 3; i++) {
+            patientService.savePatient(new Patient(null, "RANDOM" + i, "Max", "Zufall", new Date(631152000000L),
+                    "Mockstreet 1, 12345 Mockcity", null, null, "M", null, null, null, null));
+        }
+
+        for (int i = 0; i < 50; i++) {
+            assertNotNull(patientService.getPatientById(patientService.getRandomPatientId()));
+        }
+    }
+}
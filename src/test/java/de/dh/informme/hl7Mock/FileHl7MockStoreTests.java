@@ -0,0 +1,112 @@
+package de.dh.informme.hl7Mock;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static de.dh.informme.Hl7TestMessages.admission;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FileHl7MockStoreTests {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void messagesAreReplacedWithANewVersion() throws IOException {
+        FileHl7MockStore store = open(1 << 20);
+
+        assertEquals(List.of("F1", "F2"), store.saveAll(List.of(new Hl7Mock("F1", admission("F1", "OLD1", "Mustermann")), new Hl7Mock("F2", admission("F2", "OLD2", "Mustermann")))));
+        assertEquals(List.of(), store.saveAll(List.of(new Hl7Mock("F1", admission("F1", "NEW1", "Mustermann")))));
+
+        Hl7Mock hl7Mock = store.findByMshId("F1");
+        assertEquals(admission("F1", "NEW1", "Mustermann"), hl7Mock.getMessage());
+        assertEquals(1L, hl7Mock.getVersion());
+        assertEquals(1L, store.findVersionByMshId("F1").getVersion());
+        assertEquals(0L, store.findByMshId("F2").getVersion());
+        assertNull(store.findByMshId("F3"));
+        assertNull(store.findVersionByMshId("F3"));
+        Set<String> mshIds = new HashSet<>();
+        store.forEachMshId(mshIds::add);
+        assertEquals(Set.of("F1", "F2"), mshIds);
+    }
+
+    @Test
+    void indexIsRebuiltWithoutTornRecords() throws IOException {
+        FileHl7MockStore store = open(1 << 20);
+        store.saveAll(List.of(new Hl7Mock("R1", admission("R1", "FIRST", "Mustermann")), new Hl7Mock("R2", admission("R2", "SECOND", "Mustermann"))));
+        store.saveAll(List.of(new Hl7Mock("R1", admission("R1", "TORN", "Mustermann"))));
+        store.close();
+        // a crash while the last record was written
+        Path segment = segmentFiles().get(0);
+        byte[] content = Files.readAllBytes(segment);
+        int torn = new String(content, StandardCharsets.ISO_8859_1).indexOf("TORN");
+        content[torn] = 'X';
+        Files.write(segment, content);
+
+        store = open(1 << 20);
+        assertEquals(admission("R1", "FIRST", "Mustermann"), store.findByMshId("R1").getMessage());
+        assertEquals(admission("R2", "SECOND", "Mustermann"), store.findByMshId("R2").getMessage());
+        // the torn record is overwritten and does not come back
+        store.saveAll(List.of(new Hl7Mock("R3", admission("R3", "THIRD", "Mustermann"))));
+        store.close();
+
+        store = open(1 << 20);
+        assertEquals(admission("R1", "FIRST", "Mustermann"), store.findByMshId("R1").getMessage());
+        assertEquals(admission("R3", "THIRD", "Mustermann"), store.findByMshId("R3").getMessage());
+        assertEquals(3, store.getMessageCount());
+    }
+
+    @Test
+    void compactionKeepsTheCurrentMessages() throws IOException {
+        FileHl7MockStore store = open(4096);
+        for (int round = 0; round < 20; round++) {
+            for (int i = 0; i < 5; i++) {
+                store.saveAll(List.of(new Hl7Mock("C" + i, admission("C" + i, "ROUND" + round, "Mustermann"))));
+            }
+        }
+        store.saveAll(List.of(new Hl7Mock("KEEP", admission("KEEP", "ONCE", "Mustermann"))));
+        int segments = store.getSegmentCount();
+
+        store.compact();
+
+        assertTrue(store.getSegmentCount() < segments, store.getSegmentCount() + " of " + segments);
+        assertEquals(store.getSegmentCount(), segmentFiles().size());
+        store.close();
+        store = open(4096);
+        for (int i = 0; i < 5; i++) {
+            assertEquals(admission("C" + i, "ROUND19", "Mustermann"), store.findByMshId("C" + i).getMessage());
+            assertEquals(19L, store.findByMshId("C" + i).getVersion());
+        }
+        assertEquals(admission("KEEP", "ONCE", "Mustermann"), store.findByMshId("KEEP").getMessage());
+        assertEquals(6, store.getMessageCount());
+    }
+
+    private FileHl7MockStore open(int segmentSize) throws IOException {
+        FileHl7MockStore store = new FileHl7MockStore();
+        ReflectionTestUtils.setField(store, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(store, "directory", directory.toString());
+        ReflectionTestUtils.setField(store, "segmentSize", segmentSize);
+        ReflectionTestUtils.setField(store, "compactionThreshold", 0.5);
+        store.open();
+        return store;
+    }
+
+    private List<Path> segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.sorted().toList();
+        }
+    }
+}
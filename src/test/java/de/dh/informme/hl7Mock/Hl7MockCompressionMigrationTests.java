@@ -0,0 +1,47 @@
+package de.dh.informme.hl7Mock;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static de.dh.informme.Hl7TestMessages.admission;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = "informme.hl7-mock.compression.migration-batch-size=2")
+class Hl7MockCompressionMigrationTests {
+
+    @Autowired
+    private Hl7MockCompressionMigration hl7MockCompressionMigration;
+
+    @Autowired
+    private Hl7MockRepository hl7MockRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Test
+    void plainMessagesAreReadAndCompressed() {
+        // the pooled connections do not commit on their own
+        transactionTemplate.executeWithoutResult(status -> {
+            for (int i = 1; i <= 5; i++) {
+                jdbcTemplate.update("INSERT INTO hl7_mocks (msh_id, message) VALUES (?, ?)", "CMP" + i, admission("CMP" + i, "Mustermann"));
+            }
+        });
+        assertEquals(admission("CMP1", "Mustermann"), hl7MockRepository.findByMshId("CMP1").orElseThrow().getMessage());
+
+        hl7MockCompressionMigration.migrate();
+
+        for (int i = 1; i <= 5; i++) {
+            String stored = jdbcTemplate.queryForObject("SELECT message FROM hl7_mocks WHERE msh_id = ?", String.class, "CMP" + i);
+            assertTrue(Hl7MessageCompression.isCompressed(stored), stored);
+            assertTrue(stored.length() < admission("CMP" + i, "Mustermann").length());
+            assertEquals(admission("CMP" + i, "Mustermann"), hl7MockRepository.findByMshId("CMP" + i).orElseThrow().getMessage());
+        }
+    }
+}
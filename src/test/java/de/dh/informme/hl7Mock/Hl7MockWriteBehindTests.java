@@ -0,0 +1,81 @@
+package de.dh.informme.hl7Mock;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+
+import java.util.Collection;
+
+import static de.dh.informme.Hl7TestMessages.admission;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+
+@SpringBootTest(properties = "informme.hl7-mock.write-behind.linger=1000")
+class Hl7MockWriteBehindTests {
+
+    @Autowired
+    private Hl7MockWriteBehind hl7MockWriteBehind;
+
+    @SpyBean
+    private Hl7MockService hl7MockService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    void updatesOfOneMessageAreCoalesced() throws Exception {
+        double coalescedUpdates = meterRegistry.counter("informme.hl7-mock.write-behind.coalesced").count();
+
+        hl7MockWriteBehind.submit(admission("WB1", "Mustermann"), "FIRST1");
+        hl7MockWriteBehind.submit(admission("WB1", "Mustermann"), "SECOND2");
+
+        Hl7Mock hl7Mock = waitForHl7Mock("WB1");
+        assertNotNull(hl7Mock);
+        assertTrue(hl7Mock.getMessage().contains("SECOND2"), hl7Mock.getMessage());
+        assertFalse(hl7Mock.getMessage().contains("FIRST1"), hl7Mock.getMessage());
+        assertEquals(coalescedUpdates + 1, meterRegistry.counter("informme.hl7-mock.write-behind.coalesced").count());
+    }
+
+    @Test
+    void failedUpdatesDoNotStopTheWriter() throws Exception {
+        double failedUpdates = meterRegistry.counter("informme.hl7-mock.write-behind.failed").count();
+        doThrow(new IllegalStateException("rewrite failed")).when(hl7MockService).rewriteMessage(contains("|WBFAIL|"), anyString());
+        doAnswer(invocation -> {
+            if (invocation.<Collection<?>>getArgument(0).size() > 1) {
+                throw new IllegalStateException("batch failed");
+            }
+            return invocation.callRealMethod();
+        }).when(hl7MockService).saveMessages(any());
+
+        hl7MockWriteBehind.submit(admission("WBFAIL", "Mustermann"), "FAILED1");
+        hl7MockWriteBehind.submit(admission("WB2", "Mustermann"), "SINGLE2");
+        hl7MockWriteBehind.submit(admission("WB3", "Mustermann"), "SINGLE3");
+
+        assertTrue(waitForHl7Mock("WB2").getMessage().contains("SINGLE2"));
+        assertTrue(waitForHl7Mock("WB3").getMessage().contains("SINGLE3"));
+        assertEquals(failedUpdates + 1, meterRegistry.counter("informme.hl7-mock.write-behind.failed").count());
+
+        hl7MockWriteBehind.submit(admission("WB4", "Mustermann"), "AFTER4");
+        assertNotNull(waitForHl7Mock("WB4"));
+    }
+
+    private Hl7Mock waitForHl7Mock(String mshId) throws InterruptedException {
+        for (int i = 0; i < 100; i++) {
+            Hl7Mock hl7Mock = hl7MockService.getByMshId(mshId);
+            if (hl7Mock != null && hl7MockWriteBehind.getQueueDepth() == 0) {
+                return hl7Mock;
+            }
+            Thread.sleep(100);
+        }
+        return null;
+    }
+}